@@ -0,0 +1,127 @@
+package io.github.fun.stuff.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-off throughput from 1 to 32 producer threads to the benchmark thread, consuming, through a
+ * {@link MpscRingBuffer} with each {@link MpscRingBuffer.WaitStrategy} and through an {@link ArrayBlockingQueue} of the
+ * same capacity. One invocation moves {@value #ELEMENTS} elements.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class CaptureHandOffBenchmark {
+
+    static final int ELEMENTS = 1 << 18;
+    private static final int CAPACITY = 1024;
+    private static final Object ELEMENT = new Object();
+
+    public enum Queue {
+        RING_SPIN, RING_YIELD, RING_PARK, ARRAY_BLOCKING_QUEUE
+    }
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    int producers;
+
+    @Param
+    Queue queue;
+
+    ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(producers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ELEMENTS)
+    public int handOff() throws InterruptedException {
+        return switch (queue) {
+            case RING_SPIN -> ring(MpscRingBuffer.WaitStrategy.SPIN);
+            case RING_YIELD -> ring(MpscRingBuffer.WaitStrategy.YIELD);
+            case RING_PARK -> ring(MpscRingBuffer.WaitStrategy.PARK);
+            case ARRAY_BLOCKING_QUEUE -> arrayBlockingQueue();
+        };
+    }
+
+    private int ring(MpscRingBuffer.WaitStrategy waitStrategy) throws InterruptedException {
+        var ringBuffer = new MpscRingBuffer<Object>(CAPACITY, waitStrategy);
+        var done = produce(() -> {
+            for (int i = 0; i < ELEMENTS / producers; i++) {
+                ringBuffer.put(ELEMENT);
+            }
+        });
+        int consumed = 0;
+        while (consumed < ELEMENTS / producers * producers) {
+            if (ringBuffer.poll(1, TimeUnit.SECONDS) != null) {
+                consumed++;
+            }
+        }
+        done.await();
+        return consumed;
+    }
+
+    private int arrayBlockingQueue() throws InterruptedException {
+        var blockingQueue = new ArrayBlockingQueue<Object>(CAPACITY);
+        var done = produce(() -> {
+            for (int i = 0; i < ELEMENTS / producers; i++) {
+                blockingQueue.put(ELEMENT);
+            }
+        });
+        int consumed = 0;
+        while (consumed < ELEMENTS / producers * producers) {
+            if (blockingQueue.poll(1, TimeUnit.SECONDS) != null) {
+                consumed++;
+            }
+        }
+        done.await();
+        return consumed;
+    }
+
+    private CountDownLatch produce(Producer producer) {
+        var done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                try {
+                    producer.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        return done;
+    }
+
+    @FunctionalInterface
+    interface Producer {
+        void run() throws InterruptedException;
+    }
+}
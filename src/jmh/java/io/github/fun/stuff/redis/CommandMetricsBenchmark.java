@@ -0,0 +1,60 @@
+package io.github.fun.stuff.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link CommandMetrics} on the replay path, 4 threads replaying the same command: {@code instrumented} minus
+ * {@code baseline} is the per call overhead, clock reads included, and {@code record} is the recording alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CommandMetricsBenchmark {
+
+    private static final String METHOD_SIGNATURE = "java.lang.Boolean set(byte[] key, byte[] value)";
+
+    final CommandMetrics metrics = new CommandMetrics();
+
+    RedisConnection connection;
+    RedisCommandRecord command;
+
+    @Setup
+    public void setup() {
+        connection = StandInRedisConnection.create();
+        command = new RedisCommandRecord(RedisCommandsMethodHandles.getCommandId(METHOD_SIGNATURE), new Object[]{
+                "key".getBytes(StandardCharsets.UTF_8), "value".getBytes(StandardCharsets.UTF_8)});
+    }
+
+    @Benchmark
+    public Object baseline() throws Throwable {
+        return PipelinedCommandReplayer.invoke(connection, command, CommandMetrics.NONE);
+    }
+
+    @Benchmark
+    public Object instrumented() throws Throwable {
+        return PipelinedCommandReplayer.invoke(connection, command, metrics);
+    }
+
+    @Benchmark
+    public void record() {
+        metrics.record(CommandMetrics.Stage.REPLAY, command.commandId(), 1_000);
+    }
+}
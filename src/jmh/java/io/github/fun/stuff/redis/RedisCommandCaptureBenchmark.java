@@ -0,0 +1,83 @@
+package io.github.fun.stuff.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained {@code set} capture from 4 threads, copying the arguments on the heap before encoding against encoding
+ * them straight into an {@link OffHeapBufferPool}. Run it with the default {@code gc} profiler for the allocation
+ * rate, heap and direct memory in use are printed at the end of each fork.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx512m"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RedisCommandCaptureBenchmark {
+
+    private static final String METHOD_SIGNATURE = "java.lang.Boolean set(byte[] key, byte[] value)";
+
+    @Param({"256", "4096", "65536"})
+    int valueSize;
+
+    final ByteBufferPool heapPool = new ByteBufferPool(false, 1 << 17, 64);
+    final OffHeapBufferPool offHeapPool = new OffHeapBufferPool(1 << 20, 64);
+    final OffHeapCommandEncoder encoder = new OffHeapCommandEncoder(offHeapPool, PooledBuffer::release);
+
+    int commandId;
+    byte[] key;
+    byte[] value;
+
+    @Setup
+    public void setup() {
+        commandId = RedisCommandsMethodHandles.getCommandId(METHOD_SIGNATURE);
+        key = "key:1".getBytes(StandardCharsets.UTF_8);
+        value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'v');
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+        System.out.printf("%nheap used %d KiB, direct used %d KiB, slabs allocated %d%n",
+                heap.getUsed() / 1024, direct / 1024, offHeapPool.getAllocatedSlabCount());
+    }
+
+    @Benchmark
+    public int heapCopy() {
+        var record = new RedisCommandRecord(commandId, new Object[]{key.clone(), value.clone()});
+        var buffer = RedisCommandCodec.encode(record, heapPool);
+        int size = buffer.remaining();
+        heapPool.release(buffer);
+        return size;
+    }
+
+    @Benchmark
+    public void offHeap() {
+        encoder.accept(new RedisCommandRecord(commandId, new Object[]{key, value}));
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.fun.stuff.redis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode throughput of an {@code hSet} record with {@link RedisCommandCodec}, JSON and JDK serialization.
+ * The record sizes of each format are printed once per fork.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class RedisCommandCodecBenchmark {
+
+    private static final String METHOD_SIGNATURE = "java.lang.Boolean hSet(byte[] key, byte[] field, byte[] value)";
+
+    @Param({"16", "256", "4096"})
+    int valueSize;
+
+    final ByteBufferPool pool = new ByteBufferPool(true, 1 << 16, 64);
+    final ObjectMapper objectMapper = new ObjectMapper();
+
+    RedisCommandRecord record;
+    JsonCommand jsonCommand;
+    ByteBuffer binary;
+    byte[] json;
+    byte[] jdk;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'v');
+        Object[] args = {"key:1".getBytes(StandardCharsets.UTF_8), "field".getBytes(StandardCharsets.UTF_8), value};
+        record = new RedisCommandRecord(RedisCommandsMethodHandles.getCommandId(METHOD_SIGNATURE), args);
+        jsonCommand = new JsonCommand(METHOD_SIGNATURE, new byte[][]{(byte[]) args[0], (byte[]) args[1], value});
+
+        binary = RedisCommandCodec.encode(record, pool);
+        json = objectMapper.writeValueAsBytes(jsonCommand);
+        jdk = jdkEncode();
+        System.out.printf("%nrecord size for %d byte values: binary %d, json %d, jdk %d%n",
+                valueSize, binary.remaining(), json.length, jdk.length);
+    }
+
+    @Benchmark
+    public int binaryEncode() {
+        var buffer = RedisCommandCodec.encode(record, pool);
+        int size = buffer.remaining();
+        pool.release(buffer);
+        return size;
+    }
+
+    @Benchmark
+    public RedisCommandRecord binaryDecode() {
+        return RedisCommandCodec.decode(binary.duplicate());
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return objectMapper.writeValueAsBytes(jsonCommand);
+    }
+
+    @Benchmark
+    public JsonCommand jsonDecode() throws IOException {
+        return objectMapper.readValue(json, JsonCommand.class);
+    }
+
+    @Benchmark
+    public byte[] jdkEncode() throws IOException {
+        var output = new ByteArrayOutputStream();
+        try (var objectOutput = new ObjectOutputStream(output)) {
+            objectOutput.writeUTF(METHOD_SIGNATURE);
+            objectOutput.writeObject(record.args());
+        }
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public Object jdkDecode() throws IOException, ClassNotFoundException {
+        try (var objectInput = new ObjectInputStream(new ByteArrayInputStream(jdk))) {
+            objectInput.readUTF();
+            return objectInput.readObject();
+        }
+    }
+
+    public record JsonCommand(String methodSignature, byte[][] args) implements Serializable {
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.fun.stuff.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end replay of a captured command (signature + arguments) onto an {@link InMemoryRedisConnection}, so the
+ * numbers are the replay path plus an in-memory apply, without a network round trip.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class RedisCommandReplayBenchmark {
+
+    private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIELD = "field".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    private static final Map<String, String> SIGNATURES = Map.of(
+            "set", "java.lang.Boolean set(byte[] key, byte[] value)",
+            "hSet", "java.lang.Boolean hSet(byte[] key, byte[] field, byte[] value)",
+            "zAdd", "java.lang.Boolean zAdd(byte[] key, double score, byte[] value)"
+    );
+
+    private static final Map<String, Object[]> ARGS = Map.of(
+            "set", new Object[]{KEY, VALUE},
+            "hSet", new Object[]{KEY, FIELD, VALUE},
+            "zAdd", new Object[]{KEY, 1d, VALUE}
+    );
+
+    @Param({"set", "hSet", "zAdd"})
+    String command;
+
+    RedisConnection connection;
+    String methodSignature;
+    int commandId;
+    Object[] args;
+
+    @Setup
+    public void setup() {
+        connection = new InMemoryRedisConnectionFactory().getConnection();
+        methodSignature = SIGNATURES.get(command);
+        commandId = RedisCommandsMethodHandles.getCommandId(methodSignature);
+        args = ARGS.get(command);
+    }
+
+    /**
+     * The replay path of {@code RedisConnectionTest.testInvokeRedisConnectionByMethodHandle}.
+     */
+    @Benchmark
+    public Object signatureInvokeWithArguments() throws Throwable {
+        Object[] targetAndArgs = new Object[args.length + 1];
+        targetAndArgs[0] = connection;
+        System.arraycopy(args, 0, targetAndArgs, 1, args.length);
+        return RedisCommandsMethodHandles.getMethodHandle(methodSignature).invokeWithArguments(targetAndArgs);
+    }
+
+    @Benchmark
+    public Object commandIdInvoker() throws Throwable {
+        return RedisCommandsMethodHandles.getInvoker(commandId).invoke(connection, args);
+    }
+}
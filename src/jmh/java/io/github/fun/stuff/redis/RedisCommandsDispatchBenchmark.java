@@ -0,0 +1,110 @@
+package io.github.fun.stuff.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature lookup and handle invocation with 2 to 6 handle arguments (the target plus 1 to 5 command arguments).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class RedisCommandsDispatchBenchmark {
+
+    private static final Set<Class<?>> SIMPLE_PARAMETER_TYPES = Set.of(byte[].class, byte[][].class, String.class,
+            boolean.class, int.class, long.class, double.class);
+
+    @Param({"1", "2", "3", "4", "5"})
+    int commandArity;
+
+    String methodSignature;
+    int commandId;
+    Object target;
+    Object[] args;
+    Object[] targetAndArgs;
+
+    @Setup
+    public void setup() {
+        commandId = RedisCommandsMethodHandles.getMethodSignatures().stream()
+                .map(RedisCommandsMethodHandles::getCommandId)
+                .filter(id -> isCandidate(RedisCommandsMethodHandles.getMethodHandle(id).type()))
+                .min(Comparator.naturalOrder())
+                .orElseThrow(() -> new IllegalStateException("no command with " + commandArity + " arguments"));
+        methodSignature = RedisCommandsMethodHandles.getMethodSignature(commandId);
+        target = StandInRedisConnection.create();
+
+        var methodType = RedisCommandsMethodHandles.getMethodHandle(commandId).type();
+        args = new Object[commandArity];
+        targetAndArgs = new Object[commandArity + 1];
+        targetAndArgs[0] = target;
+        for (int i = 0; i < commandArity; i++) {
+            args[i] = argument(methodType.parameterType(i + 1));
+            targetAndArgs[i + 1] = args[i];
+        }
+    }
+
+    private boolean isCandidate(MethodType methodType) {
+        if (methodType.parameterCount() != commandArity + 1 || methodType.returnType() == void.class) {
+            return false;
+        }
+        return methodType.dropParameterTypes(0, 1).parameterList().stream().allMatch(SIMPLE_PARAMETER_TYPES::contains);
+    }
+
+    private static Object argument(Class<?> type) {
+        byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+        if (type == byte[].class) {
+            return key;
+        }
+        if (type == byte[][].class) {
+            return new byte[][]{key};
+        }
+        if (type == String.class) {
+            return "0";
+        }
+        return StandInRedisConnection.defaultValue(type);
+    }
+
+    @Benchmark
+    public MethodHandle lookupBySignature() {
+        return RedisCommandsMethodHandles.getMethodHandle(methodSignature);
+    }
+
+    @Benchmark
+    public MethodHandle lookupById() {
+        return RedisCommandsMethodHandles.getMethodHandle(commandId);
+    }
+
+    @Benchmark
+    public Object invokeWithArguments() throws Throwable {
+        return RedisCommandsMethodHandles.getMethodHandle(commandId).invokeWithArguments(targetAndArgs);
+    }
+
+    @Benchmark
+    public Object spreadInvokeExact() throws Throwable {
+        return (Object) RedisCommandsMethodHandles.getSpreadMethodHandle(commandId).invokeExact(target, args);
+    }
+
+    @Benchmark
+    public Object invoker() throws Throwable {
+        return RedisCommandsMethodHandles.getInvoker(commandId).invoke(target, args);
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.fun.stuff.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start cost of the command registry, one measurement per fresh JVM.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class RedisCommandsInitBenchmark {
+
+    /**
+     * What the static initializer did before the build time index.
+     */
+    @Benchmark
+    public List<RedisCommandEntry> jandexScan() {
+        return RedisCommandsIndexGenerator.scan(getClass().getClassLoader(), new LinkedHashMap<>());
+    }
+
+    @Benchmark
+    public List<RedisCommandEntry> indexLoad() {
+        return RedisCommandsIndex.load(getClass().getClassLoader());
+    }
+
+    @Benchmark
+    public Class<?> classInit() throws ClassNotFoundException {
+        return Class.forName("io.github.fun.stuff.redis.RedisCommandsMethodHandles", true, getClass().getClassLoader());
+    }
+
+    @Benchmark
+    public void classInitAndResolveAll(Blackhole blackhole) {
+        RedisCommandsMethodHandles.getMethodSignatures()
+                .forEach(methodSignature -> blackhole.consume(RedisCommandsMethodHandles.getMethodHandle(methodSignature)));
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * No-op {@link RedisConnection} for the benchmarks of the dispatch alone: every command returns the default value of
+ * its return type. {@link InMemoryRedisConnection} is the stand-in that applies the commands.
+ */
+final class StandInRedisConnection implements InvocationHandler {
+
+    private StandInRedisConnection() {
+    }
+
+    static RedisConnection create() {
+        return (RedisConnection) Proxy.newProxyInstance(StandInRedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, new StandInRedisConnection());
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "keyCommands", "stringCommands", "listCommands", "setCommands", "zSetCommands", "hashCommands",
+                 "geoCommands", "hyperLogLogCommands", "streamCommands", "scriptingCommands", "serverCommands" -> proxy;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "StandInRedisConnection";
+            default -> defaultValue(method.getReturnType());
+        };
+    }
+
+    static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return (byte) 0;
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.fun.stuff.redis;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Replays {@link RedisCommandRecord}s through the Lettuce async API of one connection, keeping up to
+ * {@code maxInFlight} commands on the wire and gathering their replies only when the window is full or on
+ * {@link #flush()}.
+ * <p>
+ * Commands without an async counterpart in {@link RedisAsyncCommandsMethodHandles} wait for the in-flight commands,
+ * then run synchronously, so the replay order is the submission order. Submissions must come from one thread.
+ */
+public class AsyncCommandReplayer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncCommandReplayer.class);
+
+    private final RedisConnection connection;
+    private final RedisClusterAsyncCommands<byte[], byte[]> asyncCommands;
+    private final int maxInFlight;
+    private final long timeoutNanos;
+    private final Consumer<PipelinedCommandReplayer.BatchResult> listener;
+    private final List<RedisCommandRecord> commands;
+    private final List<Object> replies;
+
+    @SuppressWarnings("unchecked")
+    public AsyncCommandReplayer(RedisConnectionFactory connectionFactory, int maxInFlight, Duration timeout,
+                                Consumer<PipelinedCommandReplayer.BatchResult> listener) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.connection = connectionFactory.getConnection();
+        if (!(connection.getNativeConnection() instanceof RedisClusterAsyncCommands<?, ?> nativeConnection)) {
+            connection.close();
+            throw new IllegalArgumentException("a Lettuce connection factory is required");
+        }
+        this.asyncCommands = (RedisClusterAsyncCommands<byte[], byte[]>) nativeConnection;
+        this.maxInFlight = maxInFlight;
+        this.timeoutNanos = timeout.toNanos();
+        this.listener = listener;
+        this.commands = new ArrayList<>(maxInFlight);
+        this.replies = new ArrayList<>(maxInFlight);
+    }
+
+    public void submit(RedisCommandRecord command) {
+        var asyncInvoker = RedisAsyncCommandsMethodHandles.getInvoker(command.commandId());
+        if (asyncInvoker == null) {
+            flush();
+            replaySync(command);
+            return;
+        }
+        Object reply;
+        try {
+            reply = asyncInvoker.invoke(asyncCommands, command.args());
+        } catch (Throwable e) {
+            reply = e;
+        }
+        commands.add(command);
+        replies.add(reply);
+        if (commands.size() >= maxInFlight) {
+            flush();
+        }
+    }
+
+    /**
+     * Waits for the replies of the in-flight commands and hands them to the listener.
+     */
+    public void flush() {
+        if (commands.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        List<Object> results = new ArrayList<>(replies.size());
+        Throwable error = null;
+        for (Object reply : replies) {
+            try {
+                results.add(await(reply, deadline));
+            } catch (Throwable e) {
+                results.add(null);
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        complete(new PipelinedCommandReplayer.BatchResult(List.copyOf(commands), results, error));
+        commands.clear();
+        replies.clear();
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void replaySync(RedisCommandRecord command) {
+        PipelinedCommandReplayer.BatchResult result;
+        try {
+            var reply = PipelinedCommandReplayer.invoke(connection, command);
+            result = new PipelinedCommandReplayer.BatchResult(List.of(command), Collections.singletonList(reply), null);
+        } catch (Throwable e) {
+            result = new PipelinedCommandReplayer.BatchResult(List.of(command), List.of(), e);
+        }
+        complete(result);
+    }
+
+    private void complete(PipelinedCommandReplayer.BatchResult result) {
+        if (!result.isSuccess()) {
+            LOG.warn("replay of {} commands failed", result.commands().size(), result.error());
+        }
+        listener.accept(result);
+    }
+
+    private static Object await(Object reply, long deadline) throws Throwable {
+        if (reply instanceof Throwable e) {
+            throw e;
+        }
+        var future = (RedisFuture<?>) reply;
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+}
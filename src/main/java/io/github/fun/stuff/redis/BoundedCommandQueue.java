@@ -0,0 +1,286 @@
+package io.github.fun.stuff.redis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FIFO queue of {@link RedisCommandRecord}s holding at most {@code capacity} records in memory, between capture and
+ * replay.
+ * <p>
+ * When it is full, {@link OverflowStrategy} decides what a producer does: wait, evict the oldest record, or encode
+ * the record with {@link RedisCommandCodec} into a spill file that is read back, in order, once the memory part is
+ * drained.
+ */
+public class BoundedCommandQueue implements AutoCloseable {
+
+    public enum OverflowStrategy {
+        /**
+         * The producer waits for the consumer, a slow target slows the capture down.
+         */
+        BLOCK,
+        /**
+         * The oldest record is dropped, the capture never waits but the target misses writes.
+         */
+        DROP_OLDEST,
+        /**
+         * The record is spilled to disk, memory stays bounded and nothing is lost. A record with an argument the
+         * codec does not support waits as under {@link #BLOCK}, behind the records spilled before it.
+         */
+        SPILL
+    }
+
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    private final int capacity;
+    private final OverflowStrategy overflowStrategy;
+    private final Path spillDirectory;
+    private final ArrayDeque<RedisCommandRecord> records = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ByteBufferPool pool = new ByteBufferPool(false, 64 * 1024, 4);
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_SIZE);
+
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private long spillReadPosition;
+    private long spillWritePosition;
+    private int spilledCount;
+    private long droppedTotal;
+    private long spilledTotal;
+    private long unspillableTotal;
+
+    public BoundedCommandQueue(int capacity, OverflowStrategy overflowStrategy, Path spillDirectory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (overflowStrategy == OverflowStrategy.SPILL && spillDirectory == null) {
+            throw new IllegalArgumentException("spillDirectory is required to spill");
+        }
+        this.capacity = capacity;
+        this.overflowStrategy = overflowStrategy;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * @return the record evicted to make room under {@link OverflowStrategy#DROP_OLDEST}, or {@code null}
+     */
+    public RedisCommandRecord put(RedisCommandRecord record) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            boolean spillable = overflowStrategy == OverflowStrategy.SPILL;
+            RedisCommandRecord dropped = null;
+            // keep the FIFO order: everything after the first spilled record goes to the spill file too
+            while (spilledCount > 0 || records.size() >= capacity) {
+                if (spillable) {
+                    if (spill(record)) {
+                        return null;
+                    }
+                    // the codec does not support an argument of the record, it waits as under BLOCK
+                    spillable = false;
+                } else if (overflowStrategy == OverflowStrategy.DROP_OLDEST) {
+                    dropped = records.poll();
+                    droppedTotal++;
+                } else {
+                    notFull.await();
+                }
+            }
+            records.add(record);
+            notEmpty.signal();
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the head record, or {@code null} when none arrived within the timeout
+     */
+    public RedisCommandRecord poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves up to {@code maxRecords} available records into {@code target} without waiting.
+     */
+    public int drainTo(Collection<? super RedisCommandRecord> target, int maxRecords) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxRecords && !isEmpty()) {
+                target.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return records.isEmpty() && spilledCount == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedTotal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSpilledCount() {
+        lock.lock();
+        try {
+            return spilledTotal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the records that {@link OverflowStrategy#SPILL} could not encode and that waited for room instead
+     */
+    public long getUnspillableCount() {
+        lock.lock();
+        try {
+            return unspillableTotal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (spillChannel != null) {
+                spillChannel.close();
+                Files.deleteIfExists(spillFile);
+                spillChannel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RedisCommandRecord dequeue() {
+        var record = records.poll();
+        if (record == null) {
+            record = unspill();
+        }
+        notFull.signal();
+        return record;
+    }
+
+    /**
+     * @return {@code false} when the codec does not support the record, which is not spilled
+     */
+    private boolean spill(RedisCommandRecord record) {
+        ByteBuffer buffer;
+        try {
+            buffer = RedisCommandCodec.encode(record, pool);
+        } catch (IllegalArgumentException e) {
+            unspillableTotal++;
+            return false;
+        }
+        try {
+            if (spillChannel == null) {
+                spillFile = Files.createTempFile(spillDirectory, "redis-commands-", ".spill");
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            int length = buffer.remaining();
+            lengthBuffer.clear().putInt(length).flip();
+            writeFully(lengthBuffer, spillWritePosition);
+            writeFully(buffer, spillWritePosition + LENGTH_SIZE);
+            spillWritePosition += LENGTH_SIZE + length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            pool.release(buffer);
+        }
+        spilledCount++;
+        spilledTotal++;
+        notEmpty.signal();
+        return true;
+    }
+
+    private RedisCommandRecord unspill() {
+        try {
+            lengthBuffer.clear();
+            readFully(lengthBuffer, spillReadPosition);
+            int length = lengthBuffer.flip().getInt();
+            if (length < 0 || length > spillWritePosition - spillReadPosition - LENGTH_SIZE) {
+                throw new IOException("corrupted record length " + length + " in spill file " + spillFile);
+            }
+            ByteBuffer buffer = pool.acquire(length).limit(length);
+            try {
+                readFully(buffer, spillReadPosition + LENGTH_SIZE);
+                spillReadPosition += LENGTH_SIZE + length;
+                return RedisCommandCodec.decode(buffer.flip());
+            } finally {
+                pool.release(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (--spilledCount == 0) {
+                resetSpill();
+            }
+        }
+    }
+
+    private void resetSpill() {
+        try {
+            spillChannel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        spillReadPosition = 0;
+        spillWritePosition = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += spillChannel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = spillChannel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("truncated spill file " + spillFile);
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.fun.stuff.redis;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Pool of {@link ByteBuffer}s in power of two size classes, from {@value #MIN_CAPACITY} bytes up to
+ * {@code maxPooledCapacity}; larger requests are allocated and dropped on release.
+ */
+public class ByteBufferPool {
+
+    static final int MIN_CAPACITY = 64;
+
+    private final boolean direct;
+    private final int maxPooledCapacity;
+    private final int maxBuffersPerClass;
+    private final Queue<ByteBuffer>[] sizeClasses;
+    private final AtomicIntegerArray pooledCounts;
+
+    public ByteBufferPool(boolean direct, int maxPooledCapacity, int maxBuffersPerClass) {
+        if (Integer.bitCount(maxPooledCapacity) != 1 || maxPooledCapacity < MIN_CAPACITY) {
+            throw new IllegalArgumentException("maxPooledCapacity must be a power of two >= " + MIN_CAPACITY);
+        }
+        this.direct = direct;
+        this.maxPooledCapacity = maxPooledCapacity;
+        this.maxBuffersPerClass = maxBuffersPerClass;
+        @SuppressWarnings("unchecked")
+        Queue<ByteBuffer>[] queues = new Queue[sizeClass(maxPooledCapacity) + 1];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.sizeClasses = queues;
+        this.pooledCounts = new AtomicIntegerArray(queues.length);
+    }
+
+    /**
+     * @return a cleared buffer with at least {@code minCapacity} bytes remaining
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity > maxPooledCapacity) {
+            return allocate(minCapacity);
+        }
+        int sizeClass = sizeClass(minCapacity);
+        ByteBuffer buffer = sizeClasses[sizeClass].poll();
+        if (buffer == null) {
+            return allocate(MIN_CAPACITY << sizeClass);
+        }
+        pooledCounts.decrementAndGet(sizeClass);
+        return buffer.clear();
+    }
+
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (buffer.isDirect() != direct || capacity > maxPooledCapacity || Integer.bitCount(capacity) != 1
+                || capacity < MIN_CAPACITY) {
+            return;
+        }
+        int sizeClass = sizeClass(capacity);
+        if (pooledCounts.incrementAndGet(sizeClass) > maxBuffersPerClass) {
+            pooledCounts.decrementAndGet(sizeClass);
+            return;
+        }
+        sizeClasses[sizeClass].offer(buffer);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_CAPACITY) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - Integer.numberOfTrailingZeros(MIN_CAPACITY);
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.fun.stuff.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Capture sink handing elements from the application threads to one consumer thread through a
+ * {@link MpscRingBuffer}, e.g. {@code RedisCommandRecord}s from {@link RedisCommandCaptureInterceptor} to a
+ * {@link PipelinedCommandReplayer}, or {@link PooledBuffer}s from an {@link OffHeapCommandEncoder} to a
+ * {@link ReplicationLog}.
+ * <p>
+ * A full buffer makes the capturing thread wait with the buffer {@link MpscRingBuffer.WaitStrategy}.
+ */
+public class CaptureHandOff<E> implements Consumer<E>, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CaptureHandOff.class);
+
+    private final MpscRingBuffer<E> ringBuffer;
+    private final Consumer<? super E> downstream;
+    private final Thread consumerThread;
+    private volatile boolean running = true;
+
+    public CaptureHandOff(int capacity, MpscRingBuffer.WaitStrategy waitStrategy, Consumer<? super E> downstream) {
+        this.ringBuffer = new MpscRingBuffer<>(capacity, waitStrategy);
+        this.downstream = downstream;
+        this.consumerThread = Thread.ofPlatform().daemon().name("redis-command-hand-off").start(this::consumeLoop);
+    }
+
+    @Override
+    public void accept(E element) {
+        try {
+            ringBuffer.put(element);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while handing off", e);
+        }
+    }
+
+    /**
+     * Stops the consumer thread once every element handed off so far is consumed.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        consumerThread.join();
+    }
+
+    private void consumeLoop() {
+        try {
+            while (true) {
+                var element = ringBuffer.poll(100, TimeUnit.MILLISECONDS);
+                if (element == null) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                consume(element);
+                ringBuffer.drain(this::consume, ringBuffer.capacity());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume(E element) {
+        try {
+            downstream.accept(element);
+        } catch (RuntimeException e) {
+            LOG.warn("downstream failed to consume {}", element, e);
+        }
+    }
+}
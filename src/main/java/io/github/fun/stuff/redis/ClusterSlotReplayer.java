@@ -0,0 +1,377 @@
+package io.github.fun.stuff.redis;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.ClusterTopology;
+import org.springframework.data.redis.connection.ClusterTopologyProvider;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays {@link RedisCommandRecord}s onto a Redis Cluster, each command pipelined on a connection to the master
+ * serving the cluster slot of its keys.
+ * <p>
+ * Every master gets its own {@link PipelinedCommandReplayer}, so the masters replay in parallel and the throughput
+ * grows with the number of shards, while the commands of a slot keep their order. The slot table comes from a
+ * {@link ClusterTopologyProvider}. A {@code MOVED} reply is handed back to the submitting thread: on its next
+ * {@link #submit(RedisCommandRecord)} or {@link #flush()}, it waits for the master that replied to drain, so that the
+ * later commands of the slot are redirected too, then moves the slot to the named node and resubmits the redirected
+ * commands there, in order. The full topology is refreshed on the next submission, at most once per second. An
+ * {@code ASK} reply sends {@code ASKING} and the command to the named node once, the slot table is left unchanged.
+ * <p>
+ * A command the spec knows to have no key ({@code FLUSHALL}, {@code SCRIPT FLUSH}, ...) is a barrier replayed on
+ * every master. Any other command that can not be routed to a single slot, its keys spanning several slots, not
+ * resolvable, or a connection command like {@code SELECT}, is reported failed without being sent.
+ * Submissions must come from one thread.
+ */
+public class ClusterSlotReplayer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterSlotReplayer.class);
+
+    private static final Pattern REDIRECT = Pattern.compile("^(MOVED|ASK) (\\d+) (\\S+):(\\d+)");
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * @param ask  {@code ASK}, a one-off redirect, otherwise {@code MOVED}
+     * @param node the node serving the slot
+     */
+    record Redirect(boolean ask, int slot, RedisNode node) {
+    }
+
+    /**
+     * A command {@code source} replied {@code MOVED} to.
+     */
+    private record MovedCommand(RedisCommandRecord command, NodeLane source, Redirect redirect) {
+    }
+
+    private final ClusterTopologyProvider topologyProvider;
+    private final Function<RedisNode, RedisConnectionFactory> nodeConnectionFactories;
+    private final PipelinedCommandReplayer.Options options;
+    private final Consumer<PipelinedCommandReplayer.BatchResult> listener;
+    private final CommandMetrics metrics;
+    private final Map<String, NodeLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<NodeLane> slots = new AtomicReferenceArray<>(SlotHash.SLOT_COUNT);
+    private final Queue<MovedCommand> movedCommands = new ConcurrentLinkedQueue<>();
+    private volatile boolean topologyStale;
+    private volatile long refreshedAtNanos;
+
+    /**
+     * @param clusterConnectionFactory the source of the topology, and of the host and port of each master
+     */
+    public ClusterSlotReplayer(RedisConnectionFactory clusterConnectionFactory, PipelinedCommandReplayer.Options options,
+                               Consumer<PipelinedCommandReplayer.BatchResult> listener) {
+        this(topologyOf(clusterConnectionFactory), ClusterSlotReplayer::lettuceConnectionFactory, options, listener,
+                CommandMetrics.NONE);
+    }
+
+    /**
+     * @param nodeConnectionFactories creates the connection factory of a master, destroyed on close when it is a
+     *                                {@link DisposableBean}
+     */
+    public ClusterSlotReplayer(ClusterTopologyProvider topologyProvider,
+                               Function<RedisNode, RedisConnectionFactory> nodeConnectionFactories,
+                               PipelinedCommandReplayer.Options options,
+                               Consumer<PipelinedCommandReplayer.BatchResult> listener, CommandMetrics metrics) {
+        this.topologyProvider = topologyProvider;
+        this.nodeConnectionFactories = nodeConnectionFactories;
+        this.options = options;
+        this.listener = listener;
+        this.metrics = metrics;
+        refreshTopology();
+    }
+
+    /**
+     * @return a provider reading {@code CLUSTER NODES} through a cluster connection of the factory
+     */
+    public static ClusterTopologyProvider topologyOf(RedisConnectionFactory clusterConnectionFactory) {
+        return () -> {
+            try (var connection = clusterConnectionFactory.getClusterConnection()) {
+                Set<RedisClusterNode> nodes = new LinkedHashSet<>();
+                connection.clusterGetNodes().forEach(nodes::add);
+                return new ClusterTopology(nodes);
+            }
+        };
+    }
+
+    public void submit(RedisCommandRecord command) throws InterruptedException {
+        resubmitMovedCommands();
+        if (topologyStale && System.nanoTime() - refreshedAtNanos >= REFRESH_INTERVAL_NANOS) {
+            refreshTopology();
+        }
+        int slot = RedisCommandKeys.getSlot(command);
+        if (slot != RedisCommandKeys.NO_SLOT) {
+            var lane = slots.get(slot);
+            if (lane == null) {
+                fail(command, new IllegalStateException("no master serves slot " + slot));
+            } else {
+                lane.submit(command);
+            }
+        } else if (RedisCommandKeys.isKeyless(command.commandId())
+                && !RedisCommandSpecs.getSpec(command.commandId()).connection()) {
+            barrier(command);
+        } else {
+            fail(command, new IllegalArgumentException(unroutable(command)));
+        }
+    }
+
+    /**
+     * @return the masters replayed to so far, as {@code host:port}
+     */
+    public Set<String> getNodes() {
+        return Collections.unmodifiableSet(lanes.keySet());
+    }
+
+    /**
+     * Blocks until every command submitted before this call, redirected ones included, has been replayed.
+     */
+    public void flush() throws InterruptedException {
+        do {
+            resubmitMovedCommands();
+            for (NodeLane lane : lanes.values()) {
+                lane.replayer.flush();
+            }
+        } while (!movedCommands.isEmpty());
+    }
+
+    /**
+     * Replays the commands submitted so far, redirected ones included, then closes the connections to the masters.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        try {
+            flush();
+        } finally {
+            for (NodeLane lane : lanes.values()) {
+                lane.close();
+            }
+        }
+    }
+
+    private void barrier(RedisCommandRecord command) throws InterruptedException {
+        flush();
+        for (NodeLane lane : masters()) {
+            lane.submit(command);
+        }
+        flush();
+    }
+
+    private Set<NodeLane> masters() {
+        Set<NodeLane> masters = new LinkedHashSet<>();
+        for (int slot = 0; slot < slots.length(); slot++) {
+            var lane = slots.get(slot);
+            if (lane != null) {
+                masters.add(lane);
+            }
+        }
+        return masters;
+    }
+
+    private synchronized void refreshTopology() {
+        ClusterTopology topology = topologyProvider.getTopology();
+        for (RedisClusterNode master : topology.getMasterNodes()) {
+            var lane = lane(master);
+            for (int slot : master.getSlotRange().getSlotsArray()) {
+                slots.set(slot, lane);
+            }
+        }
+        refreshedAtNanos = System.nanoTime();
+        topologyStale = false;
+    }
+
+    private NodeLane lane(RedisNode node) {
+        return lanes.computeIfAbsent(node.getHost() + ":" + node.getPort(),
+                address -> new NodeLane(new RedisNode(node.getHost(), node.getPort())));
+    }
+
+    private static String unroutable(RedisCommandRecord command) {
+        var spec = RedisCommandSpecs.getSpec(command.commandId());
+        if (spec.connection()) {
+            return spec.command() + " is not supported on a cluster";
+        }
+        var keys = RedisCommandKeys.getKeys(command);
+        if (keys == null || keys.isEmpty()) {
+            return "the keys of " + spec.command() + " (command " + command.commandId() + ") can not be resolved";
+        }
+        return "the keys of " + spec.command() + " (command " + command.commandId() + ") are in different slots";
+    }
+
+    /**
+     * Moves the slots of the {@code MOVED} commands and resubmits them, on the submitting thread.
+     */
+    private void resubmitMovedCommands() throws InterruptedException {
+        MovedCommand moved;
+        while ((moved = movedCommands.poll()) != null) {
+            // the later commands of the slot still queued on the source are redirected behind this one
+            moved.source().replayer.flush();
+            var lane = lane(moved.redirect().node());
+            slots.set(moved.redirect().slot(), lane);
+            lane.submit(moved.command());
+        }
+    }
+
+    private void fail(RedisCommandRecord command, Throwable error) {
+        listener.accept(new PipelinedCommandReplayer.BatchResult(List.of(command), List.of(), error));
+    }
+
+    /**
+     * Redirects the {@code MOVED} and {@code ASK} commands of a batch and hands the rest to the listener.
+     */
+    private void onBatch(NodeLane source, PipelinedCommandReplayer.BatchResult result) {
+        if (result.isSuccess()) {
+            listener.accept(result);
+            return;
+        }
+        List<RedisCommandRecord> commands = new ArrayList<>(result.commands().size());
+        List<Object> results = new ArrayList<>(result.commands().size());
+        Throwable error = null;
+        for (int i = 0; i < result.commands().size(); i++) {
+            var command = result.commands().get(i);
+            var reply = i < result.results().size() ? result.results().get(i) : null;
+            var redirect = reply instanceof Throwable e ? redirect(e) : null;
+            if (redirect != null) {
+                redirect(source, command, redirect);
+                continue;
+            }
+            commands.add(command);
+            results.add(reply);
+            if (reply instanceof Throwable e && error == null) {
+                error = e;
+            }
+        }
+        if (commands.size() == result.commands().size()) {
+            listener.accept(result);
+        } else if (!commands.isEmpty()) {
+            listener.accept(new PipelinedCommandReplayer.BatchResult(commands, results, error));
+        }
+    }
+
+    private void redirect(NodeLane source, RedisCommandRecord command, Redirect redirect) {
+        if (redirect.ask()) {
+            listener.accept(lane(redirect.node()).ask(command));
+            return;
+        }
+        topologyStale = true;
+        // a replay thread never submits, a full queue of another master could block it for good
+        movedCommands.add(new MovedCommand(command, source, redirect));
+    }
+
+    /**
+     * @return the {@code MOVED} or {@code ASK} redirect in the cause chain of the error, or {@code null}
+     */
+    static Redirect redirect(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null) {
+                Matcher matcher = REDIRECT.matcher(cause.getMessage());
+                if (matcher.find()) {
+                    return new Redirect(matcher.group(1).equals("ASK"), Integer.parseInt(matcher.group(2)),
+                            new RedisNode(matcher.group(3), Integer.parseInt(matcher.group(4))));
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static RedisConnectionFactory lettuceConnectionFactory(RedisNode node) {
+        var connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(node.getHost(), node.getPort()));
+        connectionFactory.afterPropertiesSet();
+        return connectionFactory;
+    }
+
+    private final class NodeLane {
+
+        private final RedisNode node;
+        private final RedisConnectionFactory connectionFactory;
+        private final PipelinedCommandReplayer replayer;
+        private RedisConnection askConnection;
+
+        private NodeLane(RedisNode node) {
+            this.node = node;
+            this.connectionFactory = nodeConnectionFactories.apply(node);
+            this.replayer = new PipelinedCommandReplayer(connectionFactory, options,
+                    result -> onBatch(this, result), metrics);
+        }
+
+        private void submit(RedisCommandRecord command) throws InterruptedException {
+            replayer.submit(command);
+        }
+
+        /**
+         * Sends {@code ASKING} and the command in one pipeline of a connection of its own, the pair stays adjacent.
+         */
+        private synchronized PipelinedCommandReplayer.BatchResult ask(RedisCommandRecord command) {
+            try {
+                if (askConnection == null) {
+                    askConnection = connectionFactory.getConnection();
+                }
+                askConnection.openPipeline();
+                try {
+                    askConnection.execute("ASKING");
+                    PipelinedCommandReplayer.invoke(askConnection, command, metrics);
+                } catch (Throwable e) {
+                    try {
+                        askConnection.closePipeline();
+                    } catch (RuntimeException closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                    throw e;
+                }
+                return new PipelinedCommandReplayer.BatchResult(List.of(command),
+                        lastReply(askConnection.closePipeline()), null);
+            } catch (RedisPipelineException e) {
+                return new PipelinedCommandReplayer.BatchResult(List.of(command), lastReply(e.getPipelineResult()), e);
+            } catch (Throwable e) {
+                LOG.warn("ASK redirect of command {} to {} failed", command.commandId(), node, e);
+                return new PipelinedCommandReplayer.BatchResult(List.of(command), List.of(), e);
+            }
+        }
+
+        private static List<Object> lastReply(List<Object> replies) {
+            return replies.isEmpty() ? List.of() : Collections.singletonList(replies.get(replies.size() - 1));
+        }
+
+        private void close() throws InterruptedException {
+            try {
+                replayer.close();
+            } finally {
+                synchronized (this) {
+                    if (askConnection != null) {
+                        askConnection.close();
+                    }
+                }
+                if (connectionFactory instanceof DisposableBean disposable) {
+                    try {
+                        disposable.destroy();
+                    } catch (Exception e) {
+                        LOG.warn("failed to destroy the connection factory of {}", node, e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisSetCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Rewrites a window of captured commands into fewer commands with the same final state.
+ * <ul>
+ *     <li>a write to a key is dropped when a later {@link RedisCommandSpec#overwrite() overwrite} ({@code SET},
+ *     {@code SETEX}, {@code DEL}, ...) replaces the key</li>
+ *     <li>consecutive {@code HSET}/{@code HMSET}, {@code SADD} or {@code ZADD} on a key are merged into one
+ *     {@code HMSET}, {@code SADD} or {@code ZADD}, the last value of a field or member winning</li>
+ * </ul>
+ * Only single key commands are rewritten. A command on several keys, or a {@link RedisCommandSpec#transfer() transfer}
+ * of the value elsewhere, keeps the earlier writes to its keys, and a command without a resolvable key
+ * ({@code SELECT}, {@code MULTI}, {@code EVAL}, ...) is a barrier nothing is moved across.
+ */
+public final class CommandCompactor {
+
+    private enum MergeKind {
+        HASH, SET, ZSET
+    }
+
+    private static final int HM_SET = commandId(RedisHashCommands.class, "hMSet", byte[].class, Map.class);
+    private static final int S_ADD = commandId(RedisSetCommands.class, "sAdd", byte[].class, byte[][].class);
+    private static final int Z_ADD_TUPLES = commandId(RedisZSetCommands.class, "zAdd", byte[].class, Set.class);
+    private static final Map<Integer, MergeKind> MERGE_KINDS = mergeKinds();
+
+    private CommandCompactor() {
+    }
+
+    /**
+     * @return the compacted window, the input is left unchanged
+     */
+    public static List<RedisCommandRecord> compact(List<RedisCommandRecord> window) {
+        List<RedisCommandRecord> compacted = new ArrayList<>(window.size());
+        int segmentStart = 0;
+        for (int i = 0; i < window.size(); i++) {
+            if (keys(window.get(i)) == null) {
+                compactSegment(window.subList(segmentStart, i), compacted);
+                compacted.add(window.get(i));
+                segmentStart = i + 1;
+            }
+        }
+        compactSegment(window.subList(segmentStart, window.size()), compacted);
+        return compacted;
+    }
+
+    private static void compactSegment(List<RedisCommandRecord> segment, List<RedisCommandRecord> compacted) {
+        if (segment.size() < 2) {
+            compacted.addAll(segment);
+            return;
+        }
+        merge(dropSuperseded(segment), compacted);
+    }
+
+    private static List<RedisCommandRecord> dropSuperseded(List<RedisCommandRecord> segment) {
+        Set<ByteBuffer> overwritten = new HashSet<>();
+        RedisCommandRecord[] kept = new RedisCommandRecord[segment.size()];
+        for (int i = segment.size() - 1; i >= 0; i--) {
+            var command = segment.get(i);
+            var keys = keys(command);
+            var spec = RedisCommandSpecs.getSpec(command.commandId());
+            if (keys.size() == 1 && !spec.transfer()) {
+                if (overwritten.contains(keys.get(0))) {
+                    continue;
+                }
+            } else if (!spec.overwrite()) {
+                keys.forEach(overwritten::remove);
+                kept[i] = command;
+                continue;
+            }
+            if (spec.overwrite()) {
+                overwritten.addAll(keys);
+            }
+            kept[i] = command;
+        }
+        List<RedisCommandRecord> survivors = new ArrayList<>(segment.size());
+        for (RedisCommandRecord command : kept) {
+            if (command != null) {
+                survivors.add(command);
+            }
+        }
+        return survivors;
+    }
+
+    private static void merge(List<RedisCommandRecord> segment, List<RedisCommandRecord> compacted) {
+        List<List<RedisCommandRecord>> runs = new ArrayList<>(segment.size());
+        Map<ByteBuffer, List<RedisCommandRecord>> lastRuns = new HashMap<>();
+        for (RedisCommandRecord command : segment) {
+            var keys = keys(command);
+            if (keys.size() != 1) {
+                keys.forEach(lastRuns::remove);
+                runs.add(List.of(command));
+                continue;
+            }
+            var kind = MERGE_KINDS.get(command.commandId());
+            var lastRun = lastRuns.get(keys.get(0));
+            if (kind != null && lastRun != null && MERGE_KINDS.get(lastRun.get(0).commandId()) == kind) {
+                lastRun.add(command);
+            } else {
+                List<RedisCommandRecord> run = new ArrayList<>(1);
+                run.add(command);
+                runs.add(run);
+                lastRuns.put(keys.get(0), run);
+            }
+        }
+        for (List<RedisCommandRecord> run : runs) {
+            compacted.add(run.size() == 1 ? run.get(0) : merge(run));
+        }
+    }
+
+    private static RedisCommandRecord merge(List<RedisCommandRecord> run) {
+        byte[] key = (byte[]) run.get(0).args()[0];
+        return switch (MERGE_KINDS.get(run.get(0).commandId())) {
+            case HASH -> {
+                Map<byte[], byte[]> hashes = new TreeMap<>(Arrays::compare);
+                for (RedisCommandRecord command : run) {
+                    if (command.commandId() == HM_SET) {
+                        @SuppressWarnings("unchecked")
+                        var map = (Map<byte[], byte[]>) command.args()[1];
+                        hashes.putAll(map);
+                    } else {
+                        hashes.put((byte[]) command.args()[1], (byte[]) command.args()[2]);
+                    }
+                }
+                yield new RedisCommandRecord(HM_SET, new Object[]{key, new LinkedHashMap<>(hashes)});
+            }
+            case SET -> {
+                List<byte[]> members = new ArrayList<>();
+                for (RedisCommandRecord command : run) {
+                    members.addAll(Arrays.asList((byte[][]) command.args()[1]));
+                }
+                yield new RedisCommandRecord(S_ADD, new Object[]{key, members.toArray(byte[][]::new)});
+            }
+            case ZSET -> {
+                Map<byte[], Double> scores = new TreeMap<>(Arrays::compare);
+                for (RedisCommandRecord command : run) {
+                    if (command.commandId() == Z_ADD_TUPLES) {
+                        @SuppressWarnings("unchecked")
+                        var tuples = (Set<Tuple>) command.args()[1];
+                        tuples.forEach(tuple -> scores.put(tuple.getValue(), tuple.getScore()));
+                    } else {
+                        scores.put((byte[]) command.args()[2], (Double) command.args()[1]);
+                    }
+                }
+                Set<Tuple> tuples = new LinkedHashSet<>();
+                scores.forEach((member, score) -> tuples.add(new DefaultTuple(member, score)));
+                yield new RedisCommandRecord(Z_ADD_TUPLES, new Object[]{key, tuples});
+            }
+        };
+    }
+
+    /**
+     * @return the keys of the command, {@code null} when it has none or one can not be resolved
+     */
+    private static List<ByteBuffer> keys(RedisCommandRecord command) {
+        var keys = RedisCommandKeys.getKeys(command);
+        if (keys == null || keys.isEmpty()) {
+            return null;
+        }
+        return keys.stream().map(ByteBuffer::wrap).toList();
+    }
+
+    private static Map<Integer, MergeKind> mergeKinds() {
+        Map<Integer, MergeKind> mergeKinds = new HashMap<>();
+        // a kind is only merged when the command it merges into is known
+        if (HM_SET != RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID) {
+            mergeKinds.put(commandId(RedisHashCommands.class, "hSet", byte[].class, byte[].class, byte[].class), MergeKind.HASH);
+            mergeKinds.put(HM_SET, MergeKind.HASH);
+        }
+        if (S_ADD != RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID) {
+            mergeKinds.put(S_ADD, MergeKind.SET);
+        }
+        if (Z_ADD_TUPLES != RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID) {
+            mergeKinds.put(commandId(RedisZSetCommands.class, "zAdd", byte[].class, double.class, byte[].class), MergeKind.ZSET);
+            mergeKinds.put(Z_ADD_TUPLES, MergeKind.ZSET);
+        }
+        mergeKinds.remove(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID);
+        return mergeKinds;
+    }
+
+    private static int commandId(Class<?> commandsInterface, String name, Class<?>... parameterTypes) {
+        try {
+            return RedisCommandsMethodHandles.getCommandId(commandsInterface.getMethod(name, parameterTypes));
+        } catch (NoSuchMethodException e) {
+            return RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID;
+        }
+    }
+}
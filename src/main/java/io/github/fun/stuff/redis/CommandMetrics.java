@@ -0,0 +1,143 @@
+package io.github.fun.stuff.redis;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Count, total time and {@link LatencyHistogram} of every command id, per replication {@link Stage}.
+ * <p>
+ * A {@link Series} is created on the first recording of its stage and command id, then recording is a few striped
+ * increments, cheap enough to stay on in production. {@link #NONE} records nothing, callers check
+ * {@link #isEnabled()} to skip the clock reads too. {@code CommandMetricsBinder} exports the series to Micrometer.
+ * <p>
+ * Write commands that could not be captured, so are missing on the targets, are counted per command id with
+ * {@link #recordDropped(int)}.
+ */
+public class CommandMetrics {
+
+    public static final CommandMetrics NONE = new CommandMetrics(false);
+
+    public enum Stage {
+        /**
+         * The capture sink call on the application thread.
+         */
+        CAPTURE,
+        /**
+         * Encoding with {@link RedisCommandCodec}.
+         */
+        ENCODE,
+        /**
+         * The invocation of the command on the target connection.
+         */
+        REPLAY
+    }
+
+    public record Series(Stage stage, int commandId, LongAdder count, LongAdder totalNanos, LatencyHistogram histogram) {
+    }
+
+    private final boolean enabled;
+    private final AtomicReferenceArray<Series>[] series;
+    /**
+     * Indexed by command id + 1, {@link RedisCommandsMethodHandles#UNKNOWN_COMMAND_ID} first.
+     */
+    private final AtomicLongArray droppedCounts;
+    private final List<Consumer<Series>> seriesListeners = new CopyOnWriteArrayList<>();
+
+    public CommandMetrics() {
+        this(true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CommandMetrics(boolean enabled) {
+        this.enabled = enabled;
+        this.series = new AtomicReferenceArray[Stage.values().length];
+        for (int stage = 0; stage < series.length; stage++) {
+            series[stage] = new AtomicReferenceArray<>(enabled ? RedisCommandsMethodHandles.getCommandIdLimit() : 0);
+        }
+        this.droppedCounts = new AtomicLongArray(enabled ? RedisCommandsMethodHandles.getCommandIdLimit() + 1 : 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(Stage stage, int commandId, long nanos) {
+        var stageSeries = series[stage.ordinal()];
+        if (commandId < 0 || commandId >= stageSeries.length()) {
+            return;
+        }
+        var commandSeries = stageSeries.get(commandId);
+        if (commandSeries == null) {
+            commandSeries = createSeries(stage, commandId);
+        }
+        commandSeries.count().increment();
+        commandSeries.totalNanos().add(nanos);
+        commandSeries.histogram().record(nanos);
+    }
+
+    /**
+     * Counts a write command that was not captured, an unknown command or one the capture sink failed on.
+     */
+    public void recordDropped(int commandId) {
+        int index = commandId + 1;
+        if (index >= 0 && index < droppedCounts.length()) {
+            droppedCounts.incrementAndGet(index);
+        }
+    }
+
+    /**
+     * @return the write commands of the command id that were not captured
+     */
+    public long getDroppedCount(int commandId) {
+        int index = commandId + 1;
+        return index >= 0 && index < droppedCounts.length() ? droppedCounts.get(index) : 0;
+    }
+
+    /**
+     * @return the write commands of every command id that were not captured
+     */
+    public long getDroppedCount() {
+        long total = 0;
+        for (int index = 0; index < droppedCounts.length(); index++) {
+            total += droppedCounts.get(index);
+        }
+        return total;
+    }
+
+    /**
+     * @return the series of the stage and command, or {@code null} if nothing was recorded
+     */
+    public Series getSeries(Stage stage, int commandId) {
+        var stageSeries = series[stage.ordinal()];
+        return commandId < 0 || commandId >= stageSeries.length() ? null : stageSeries.get(commandId);
+    }
+
+    /**
+     * Calls {@code listener} with every existing series, then with each series created later.
+     */
+    public void forEachSeries(Consumer<Series> listener) {
+        seriesListeners.add(listener);
+        for (var stageSeries : series) {
+            for (int commandId = 0; commandId < stageSeries.length(); commandId++) {
+                var commandSeries = stageSeries.get(commandId);
+                if (commandSeries != null) {
+                    listener.accept(commandSeries);
+                }
+            }
+        }
+    }
+
+    private Series createSeries(Stage stage, int commandId) {
+        var created = new Series(stage, commandId, new LongAdder(), new LongAdder(), new LatencyHistogram());
+        var stageSeries = series[stage.ordinal()];
+        if (!stageSeries.compareAndSet(commandId, null, created)) {
+            return stageSeries.get(commandId);
+        }
+        seriesListeners.forEach(listener -> listener.accept(created));
+        return created;
+    }
+}
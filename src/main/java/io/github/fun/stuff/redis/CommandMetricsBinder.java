@@ -0,0 +1,55 @@
+package io.github.fun.stuff.redis;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports {@link CommandMetrics} to Micrometer, one {@code redis.replication.command} timer and
+ * {@code redis.replication.command.latency} percentile gauges per stage and command id, registered as the series
+ * appear, and a {@code redis.replication.command.dropped} counter of the write commands that were not captured.
+ * Micrometer is an optional dependency, only this class needs it.
+ */
+public class CommandMetricsBinder implements MeterBinder {
+
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+
+    private final CommandMetrics metrics;
+
+    public CommandMetricsBinder(CommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        metrics.forEachSeries(series -> bind(registry, series));
+        FunctionCounter.builder("redis.replication.command.dropped", metrics, CommandMetrics::getDroppedCount)
+                .description("Write commands that were not captured")
+                .register(registry);
+    }
+
+    private static void bind(MeterRegistry registry, CommandMetrics.Series series) {
+        var tags = Tags.of(
+                "stage", series.stage().name().toLowerCase(Locale.ROOT),
+                "command", RedisCommandSpecs.getSpec(series.commandId()).command(),
+                "commandId", Integer.toString(series.commandId()));
+        FunctionTimer.builder("redis.replication.command", series,
+                        s -> s.count().sum(), s -> s.totalNanos().sum(), TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .description("Time spent per command and replication stage")
+                .register(registry);
+        for (double percentile : PERCENTILES) {
+            Gauge.builder("redis.replication.command.latency", series,
+                            s -> s.histogram().snapshot().valueAt(percentile) / 1e9)
+                    .tags(tags.and("percentile", Double.toString(percentile / 100)))
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+    }
+}
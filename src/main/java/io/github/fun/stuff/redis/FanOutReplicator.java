@@ -0,0 +1,367 @@
+package io.github.fun.stuff.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replicates one {@link ReplicationLog} to several targets (a DR region, a cache tier, ...), each read through its own
+ * {@link ReplicationLog.Cursor}, named after the target, and replayed by its own {@link ShardedCommandReplayer}.
+ * <p>
+ * Commands are encoded once, when appended to the log, and every target decodes them from the mapped segment. A
+ * target runs on its own virtual thread: it replays a window of {@code batchSize × lanes} commands, waits for them,
+ * then commits its cursor.
+ * <p>
+ * A command the target rejects ({@code WRONGTYPE}, ...) would fail again, it is logged, counted in
+ * {@link #getRejectedCommandCount(String)} and skipped. On a connection failure or a timeout, only the commands of the
+ * window not confirmed yet are replayed again after the {@link RetryPolicy} backoff, so a non idempotent command is
+ * applied twice only when it was in flight when the connection failed. A target out of attempts stops as
+ * {@link State#FAILED} at its last commit. Either way the other targets keep going, {@link #getLag(String)} tells how
+ * far behind each one is, and the {@link ReplicationLog} retention keeps the records a target has not committed.
+ */
+public class FanOutReplicator implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FanOutReplicator.class);
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    public enum State {
+        RUNNING,
+        /**
+         * Waiting out the backoff before replaying the unconfirmed commands of the window again.
+         */
+        RETRYING,
+        /**
+         * Out of attempts, the cursor is left at the last replayed window.
+         */
+        FAILED
+    }
+
+    /**
+     * @param maxAttempts attempts per window, the first one included, after connection failures and timeouts
+     */
+    public record RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+
+        public RetryPolicy {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+                throw new IllegalArgumentException("backoffs must satisfy 0 <= initialBackoff <= maxBackoff");
+            }
+        }
+
+        public static RetryPolicy defaults() {
+            return new RetryPolicy(10, Duration.ofMillis(100), Duration.ofSeconds(30));
+        }
+
+        /**
+         * @return {@code initialBackoff} doubled after each failed attempt, up to {@code maxBackoff}
+         */
+        Duration backoff(int failedAttempts) {
+            long nanos = initialBackoff.toNanos() << Math.min(failedAttempts - 1, 30);
+            return nanos < 0 || nanos > maxBackoff.toNanos() ? maxBackoff : Duration.ofNanos(nanos);
+        }
+    }
+
+    /**
+     * @param name    the cursor name, unique per log
+     * @param lanes   the {@link ShardedCommandReplayer} lanes
+     * @param options the batch size, mode and queue of each lane
+     */
+    public record Target(String name, RedisConnectionFactory connectionFactory, int lanes,
+                         PipelinedCommandReplayer.Options options, RetryPolicy retryPolicy) {
+
+        public Target {
+            if (lanes < 1) {
+                throw new IllegalArgumentException("lanes must be positive");
+            }
+        }
+
+        public Target(String name, RedisConnectionFactory connectionFactory) {
+            this(name, connectionFactory, 1, PipelinedCommandReplayer.Options.defaults(), RetryPolicy.defaults());
+        }
+    }
+
+    private final ReplicationLog log;
+    private final Map<String, TargetReplicator> replicators = new LinkedHashMap<>();
+    private volatile boolean running = true;
+
+    public FanOutReplicator(ReplicationLog log, List<Target> targets) throws IOException {
+        this(log, targets, CommandMetrics.NONE);
+    }
+
+    /**
+     * @param metrics shared by the targets, their {@link CommandMetrics.Stage#REPLAY} series add up
+     */
+    public FanOutReplicator(ReplicationLog log, List<Target> targets, CommandMetrics metrics) throws IOException {
+        this.log = log;
+        for (Target target : targets) {
+            if (replicators.containsKey(target.name())) {
+                throw new IllegalArgumentException("duplicate target " + target.name());
+            }
+            replicators.put(target.name(), new TargetReplicator(target, log.openCursor(target.name()), metrics));
+        }
+        replicators.values().forEach(replicator -> replicator.thread.start());
+    }
+
+    public Set<String> getTargetNames() {
+        return Collections.unmodifiableSet(replicators.keySet());
+    }
+
+    /**
+     * @return the bytes of the log not yet replayed to the target
+     */
+    public long getLag(String target) {
+        return log.getEndOffset() - replicator(target).replayedOffset;
+    }
+
+    public State getState(String target) {
+        return replicator(target).state;
+    }
+
+    /**
+     * @return the commands the target rejected, which were skipped
+     */
+    public long getRejectedCommandCount(String target) {
+        return replicator(target).rejectedCommands.get();
+    }
+
+    /**
+     * Blocks until every target not {@link State#FAILED} has replayed the records appended before this call.
+     *
+     * @return {@code false} when the timeout elapsed first
+     */
+    public boolean awaitReplicated(Duration timeout) throws InterruptedException {
+        long endOffset = log.getEndOffset();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (TargetReplicator replicator : replicators.values()) {
+            while (replicator.state != State.FAILED && replicator.replayedOffset < endOffset) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the targets once their current window is replayed and committed.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        for (TargetReplicator replicator : replicators.values()) {
+            replicator.thread.join();
+        }
+    }
+
+    private TargetReplicator replicator(String target) {
+        var replicator = replicators.get(target);
+        if (replicator == null) {
+            throw new IllegalArgumentException("unknown target " + target);
+        }
+        return replicator;
+    }
+
+    private final class TargetReplicator implements Runnable {
+
+        private final Target target;
+        private final ReplicationLog.Cursor cursor;
+        private final CommandMetrics metrics;
+        private final Thread thread;
+        private final AtomicLong rejectedCommands = new AtomicLong();
+        /**
+         * The commands read since the last commit, replayed until all of them are {@link #settled}.
+         */
+        private final List<RedisCommandRecord> window = new ArrayList<>();
+        /**
+         * The commands of the window applied, or rejected by the target, added from the lane threads.
+         */
+        private final Set<RedisCommandRecord> settled = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<>()));
+        private volatile long replayedOffset;
+        private volatile State state = State.RUNNING;
+        private volatile Throwable unconfirmedError;
+
+        private TargetReplicator(Target target, ReplicationLog.Cursor cursor, CommandMetrics metrics) {
+            this.target = target;
+            this.cursor = cursor;
+            this.metrics = metrics;
+            this.replayedOffset = cursor.getOffset();
+            this.thread = Thread.ofVirtual().name("redis-fan-out-" + target.name()).unstarted(this);
+        }
+
+        @Override
+        public void run() {
+            int windowSize = target.options().batchSize() * target.lanes();
+            int failedAttempts = 0;
+            try (var replayer = new ShardedCommandReplayer(target.connectionFactory(), target.lanes(),
+                    target.options(), this::onBatch, metrics)) {
+                while (running) {
+                    Throwable error;
+                    try {
+                        if (window.isEmpty() && !readWindow(windowSize)) {
+                            LockSupport.parkNanos(this, IDLE_NANOS);
+                            continue;
+                        }
+                        error = replayWindow(replayer);
+                        if (error == null) {
+                            cursor.commit();
+                            replayedOffset = cursor.getOffset();
+                            window.clear();
+                            settled.clear();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        error = e;
+                    }
+                    if (error == null) {
+                        failedAttempts = 0;
+                        state = State.RUNNING;
+                        continue;
+                    }
+                    if (++failedAttempts >= target.retryPolicy().maxAttempts()) {
+                        state = State.FAILED;
+                        LOG.error("replication to {} failed {} times, stopped at offset {}", target.name(),
+                                failedAttempts, replayedOffset, error);
+                        return;
+                    }
+                    state = State.RETRYING;
+                    LOG.warn("replication to {} failed, replaying {} unconfirmed commands after offset {} again",
+                            target.name(), window.size() - settled.size(), replayedOffset, error);
+                    pause(target.retryPolicy().backoff(failedAttempts));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * @return {@code false} at the end of the log
+         */
+        private boolean readWindow(int windowSize) {
+            try {
+                ByteBuffer payload;
+                while (window.size() < windowSize && (payload = cursor.nextPayload()) != null) {
+                    window.add(RedisCommandCodec.decode(payload));
+                }
+            } catch (RuntimeException e) {
+                window.clear();
+                cursor.seek(replayedOffset);
+                throw e;
+            }
+            return !window.isEmpty();
+        }
+
+        /**
+         * @return the connection failure that left commands of the window unconfirmed, {@code null} when all settled
+         */
+        private Throwable replayWindow(ShardedCommandReplayer replayer) throws InterruptedException {
+            unconfirmedError = null;
+            int submitted = 0;
+            for (RedisCommandRecord command : window) {
+                if (!settled.contains(command)) {
+                    replayer.submit(command);
+                    submitted++;
+                }
+            }
+            if (submitted > 0) {
+                replayer.flush();
+            }
+            if (settled.size() == window.size()) {
+                return null;
+            }
+            var error = unconfirmedError;
+            return error != null ? error : new IllegalStateException(
+                    (window.size() - settled.size()) + " commands of the window were not confirmed");
+        }
+
+        private void onBatch(PipelinedCommandReplayer.BatchResult result) {
+            var submitted = result.submitted();
+            var commands = result.commands();
+            var results = result.results();
+            if (result.isSuccess()) {
+                settled.addAll(submitted);
+            } else if (isRetryable(result.error())
+                    || results.stream().anyMatch(reply -> reply instanceof Throwable e && isRetryable(e))) {
+                if (commands.equals(submitted)) {
+                    // the commands replied to before the failure were applied
+                    for (int i = 0; i < results.size(); i++) {
+                        settle(submitted.get(i), results.get(i));
+                    }
+                }
+                unconfirmedError = result.error();
+            } else if (results.isEmpty()) {
+                commands.forEach(command -> rejected(command, result.error()));
+                settled.addAll(submitted);
+            } else if (commands.equals(submitted) || results.size() == commands.size()) {
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i) instanceof Throwable e) {
+                        rejected(commands.get(i), e);
+                    }
+                }
+                // the commands after the last reply were not sent and are replayed again
+                settled.addAll(results.size() == commands.size() ? submitted : submitted.subList(0, results.size()));
+            } else {
+                unconfirmedError = result.error();
+            }
+        }
+
+        private void settle(RedisCommandRecord command, Object reply) {
+            if (reply instanceof Throwable e) {
+                if (isRetryable(e)) {
+                    return;
+                }
+                rejected(command, e);
+            }
+            settled.add(command);
+        }
+
+        private void rejected(RedisCommandRecord command, Throwable error) {
+            rejectedCommands.incrementAndGet();
+            LOG.warn("{} rejected {}, skipping it", target.name(),
+                    RedisCommandSpecs.getSpec(command.commandId()).command(), error);
+        }
+
+        private void pause(Duration duration) {
+            long deadline = System.nanoTime() + duration.toNanos();
+            long remaining;
+            while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, Math.min(remaining, IDLE_NANOS));
+            }
+        }
+    }
+
+    /**
+     * @return whether {@code error} is a connection failure or a timeout, after which the command may succeed
+     */
+    static boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessResourceFailureException || cause instanceof TransientDataAccessException
+                    || cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
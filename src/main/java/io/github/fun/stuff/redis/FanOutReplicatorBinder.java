@@ -0,0 +1,40 @@
+package io.github.fun.stuff.redis;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exports the progress of each {@link FanOutReplicator} target to Micrometer: {@code redis.replication.lag}, the
+ * bytes of the log it has not replayed yet, {@code redis.replication.failed}, 1 once it gave up, and
+ * {@code redis.replication.rejected}, the commands it rejected and that were skipped.
+ */
+public class FanOutReplicatorBinder implements MeterBinder {
+
+    private final FanOutReplicator replicator;
+
+    public FanOutReplicatorBinder(FanOutReplicator replicator) {
+        this.replicator = replicator;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String target : replicator.getTargetNames()) {
+            Gauge.builder("redis.replication.lag", replicator, r -> r.getLag(target))
+                    .tag("target", target)
+                    .baseUnit("bytes")
+                    .description("Bytes of the replication log not yet replayed to the target")
+                    .register(registry);
+            Gauge.builder("redis.replication.failed", replicator,
+                            r -> r.getState(target) == FanOutReplicator.State.FAILED ? 1 : 0)
+                    .tag("target", target)
+                    .description("1 when the target ran out of retry attempts")
+                    .register(registry);
+            FunctionCounter.builder("redis.replication.rejected", replicator, r -> r.getRejectedCommandCount(target))
+                    .tag("target", target)
+                    .description("Commands the target rejected, skipped without retry")
+                    .register(registry);
+        }
+    }
+}
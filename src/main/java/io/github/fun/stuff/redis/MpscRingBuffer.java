@@ -0,0 +1,196 @@
+package io.github.fun.stuff.redis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer single-consumer queue, the hand-off between the application threads that capture
+ * commands and the thread that encodes or replays them.
+ * <p>
+ * Each pre-allocated slot carries a sequence number (Vyukov's bounded queue): a producer claims a slot with one CAS on
+ * the tail and publishes it by advancing the slot sequence, the consumer frees it by advancing the sequence one lap.
+ * Producers never wait on each other, only on a full buffer, and how both sides wait is the {@link WaitStrategy}.
+ */
+public class MpscRingBuffer<E> {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+
+    public enum WaitStrategy {
+        /**
+         * Busy spin, lowest latency, burns a core per waiting thread.
+         */
+        SPIN,
+        /**
+         * Spin briefly, then {@link Thread#yield()}.
+         */
+        YIELD,
+        /**
+         * Spin, yield, then park: the consumer is unparked by the next producer, producers re-check a full buffer every
+         * 50 µs.
+         */
+        PARK
+    }
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private volatile Thread parkedConsumer;
+
+    public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two >= 2");
+        }
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * @return {@code false} when the buffer is full
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    var consumer = parkedConsumer;
+                    if (consumer != null) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Offers the element, waiting with the {@link WaitStrategy} while the buffer is full.
+     */
+    public void put(E element) throws InterruptedException {
+        for (int tries = 0; !offer(element); tries++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            idle(tries);
+        }
+    }
+
+    /**
+     * Consumer side only.
+     *
+     * @return the head element, or {@code null} when the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        var element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, head + elements.length);
+        head++;
+        return element;
+    }
+
+    /**
+     * Consumer side only.
+     *
+     * @return the head element, or {@code null} when none was offered within the timeout
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E element;
+        for (int tries = 0; (element = poll()) == null; tries++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (waitStrategy == WaitStrategy.PARK && tries >= YIELD_TRIES) {
+                element = parkConsumer(remaining);
+                if (element != null) {
+                    return element;
+                }
+            } else {
+                idle(tries);
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Consumer side only, hands up to {@code limit} available elements to {@code consumer} without waiting.
+     *
+     * @return the number of drained elements
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    private E parkConsumer(long nanos) {
+        parkedConsumer = Thread.currentThread();
+        try {
+            // re-check after publishing the parked thread, a producer that missed it has published its element
+            var element = poll();
+            if (element == null) {
+                LockSupport.parkNanos(this, nanos);
+            }
+            return element;
+        } finally {
+            parkedConsumer = null;
+        }
+    }
+
+    private void idle(int tries) {
+        switch (waitStrategy) {
+            case SPIN -> Thread.onSpinWait();
+            case YIELD -> {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            case PARK -> {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (tries < YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+            }
+        }
+    }
+}
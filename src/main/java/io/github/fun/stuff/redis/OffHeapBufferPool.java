@@ -0,0 +1,113 @@
+package io.github.fun.stuff.redis;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carves {@link PooledBuffer}s out of direct memory slabs, so captured arguments are copied off-heap instead of into
+ * young generation {@code byte[]}s.
+ * <p>
+ * A slab is reference counted by the buffers carved from it and returns to the pool once the last of them is
+ * released, requests larger than a slab get a dedicated direct buffer. Direct {@link ByteBuffer}s are used rather than
+ * {@code MemorySegment}, which is still a preview API on Java 21.
+ */
+public class OffHeapBufferPool {
+
+    private static final int ALIGNMENT = Long.BYTES;
+
+    private final int slabSize;
+    private final int maxFreeSlabs;
+    private final Queue<Slab> freeSlabs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeSlabCount = new AtomicInteger();
+    private final AtomicLong allocatedSlabs = new AtomicLong();
+    private Slab current;
+
+    public OffHeapBufferPool(int slabSize, int maxFreeSlabs) {
+        if (slabSize < ALIGNMENT) {
+            throw new IllegalArgumentException("slabSize must be at least " + ALIGNMENT);
+        }
+        this.slabSize = slabSize;
+        this.maxFreeSlabs = maxFreeSlabs;
+    }
+
+    /**
+     * @return a buffer of exactly {@code size} bytes, released with {@link PooledBuffer#release()}
+     */
+    public PooledBuffer allocate(int size) {
+        if (size > slabSize) {
+            return new PooledBuffer(ByteBuffer.allocateDirect(size), null);
+        }
+        synchronized (this) {
+            if (current == null || current.remaining() < size) {
+                if (current != null) {
+                    current.release();
+                }
+                current = takeSlab();
+            }
+            return current.carve(size);
+        }
+    }
+
+    /**
+     * @return the slabs allocated since the pool was created, a steady count means slabs are recycled
+     */
+    public long getAllocatedSlabCount() {
+        return allocatedSlabs.get();
+    }
+
+    private Slab takeSlab() {
+        var slab = freeSlabs.poll();
+        if (slab == null) {
+            allocatedSlabs.incrementAndGet();
+            return new Slab(ByteBuffer.allocateDirect(slabSize));
+        }
+        freeSlabCount.decrementAndGet();
+        return slab;
+    }
+
+    private void recycle(Slab slab) {
+        if (freeSlabCount.incrementAndGet() > maxFreeSlabs) {
+            freeSlabCount.decrementAndGet();
+            return;
+        }
+        slab.reset();
+        freeSlabs.offer(slab);
+    }
+
+    final class Slab {
+
+        private final ByteBuffer memory;
+        // one reference for the pool while the slab is the current one, one per carved buffer
+        private final AtomicInteger refCount = new AtomicInteger(1);
+        private int position;
+
+        private Slab(ByteBuffer memory) {
+            this.memory = memory;
+        }
+
+        int remaining() {
+            return memory.capacity() - position;
+        }
+
+        PooledBuffer carve(int size) {
+            refCount.incrementAndGet();
+            var buffer = memory.slice(position, size);
+            position = Math.min(memory.capacity(), (position + size + ALIGNMENT - 1) & -ALIGNMENT);
+            return new PooledBuffer(buffer, this);
+        }
+
+        void release() {
+            if (refCount.decrementAndGet() == 0) {
+                recycle(this);
+            }
+        }
+
+        private void reset() {
+            position = 0;
+            refCount.set(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.fun.stuff.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Capture sink encoding each {@link RedisCommandRecord} with {@link RedisCommandCodec} straight into an
+ * {@link OffHeapBufferPool}, on the calling thread, so the command arguments are never copied on the heap. Plugged
+ * into {@link RedisCommandCaptureInterceptor}, the record only wraps the intercepted arguments for the encoding.
+ * <p>
+ * The {@code sink} owns the flipped {@link PooledBuffer} and releases it once the record is logged or replayed.
+ * <p>
+ * A record with an argument the codec does not support ({@code ZAddArgs}, {@code Point}, ...) is not replicated: it
+ * is logged once per command id and counted with {@link CommandMetrics#recordDropped(int)}, the application thread
+ * never sees the failure.
+ */
+public class OffHeapCommandEncoder implements Consumer<RedisCommandRecord> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapCommandEncoder.class);
+
+    private final OffHeapBufferPool pool;
+    private final Consumer<PooledBuffer> sink;
+    private final CommandMetrics metrics;
+    private final Set<Integer> reportedDrops = ConcurrentHashMap.newKeySet();
+
+    public OffHeapCommandEncoder(OffHeapBufferPool pool, Consumer<PooledBuffer> sink) {
+        this(pool, sink, CommandMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the encoding time as {@link CommandMetrics.Stage#ENCODE}
+     */
+    public OffHeapCommandEncoder(OffHeapBufferPool pool, Consumer<PooledBuffer> sink, CommandMetrics metrics) {
+        this.pool = pool;
+        this.sink = sink;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void accept(RedisCommandRecord record) {
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        int size;
+        try {
+            size = RedisCommandCodec.encodedSize(record.commandId(), record.args());
+        } catch (IllegalArgumentException e) {
+            drop(record, e);
+            return;
+        }
+        var pooledBuffer = pool.allocate(size);
+        try {
+            RedisCommandCodec.encode(record.commandId(), record.args(), pooledBuffer.buffer());
+            pooledBuffer.buffer().flip();
+        } catch (IllegalArgumentException e) {
+            pooledBuffer.release();
+            drop(record, e);
+            return;
+        } catch (RuntimeException e) {
+            pooledBuffer.release();
+            throw e;
+        }
+        if (metrics.isEnabled()) {
+            metrics.record(CommandMetrics.Stage.ENCODE, record.commandId(), System.nanoTime() - start);
+        }
+        sink.accept(pooledBuffer);
+    }
+
+    private void drop(RedisCommandRecord record, IllegalArgumentException e) {
+        metrics.recordDropped(record.commandId());
+        if (reportedDrops.add(record.commandId())) {
+            LOG.warn("can not encode command {}, it is not replicated", record.commandId(), e);
+        }
+    }
+}
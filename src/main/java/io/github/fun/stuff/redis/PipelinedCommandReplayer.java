@@ -0,0 +1,353 @@
+package io.github.fun.stuff.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Replays {@link RedisCommandRecord}s onto one {@link RedisConnection} in batches.
+ * <p>
+ * A batch is sent as soon as it holds {@link Options#batchSize()} commands or {@link Options#flushInterval()} after
+ * its first command, inside {@code openPipeline()}/{@code closePipeline()} or {@code MULTI}/{@code EXEC}, and its
+ * outcome is handed to the {@link BatchResult} listener on the replay thread. With {@link Options#compact()} the
+ * batch is the compaction window, and the {@link BatchResult} holds the compacted commands.
+ * <p>
+ * Submitted commands wait in a {@link BoundedCommandQueue}, whose {@link Options#queueCapacity()} and
+ * {@link Options#overflowStrategy()} bound the memory held for a slow target. With {@link Options#virtualThreads()}
+ * the replay thread is virtual, so many replayers (lanes, targets) cost no platform thread while blocked on Redis.
+ */
+public class PipelinedCommandReplayer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelinedCommandReplayer.class);
+
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    public enum Mode {
+        /**
+         * One network round trip per batch, no atomicity.
+         */
+        PIPELINE,
+        /**
+         * {@code MULTI}/{@code EXEC} per batch, for command groups that must apply atomically and in order.
+         */
+        TRANSACTION
+    }
+
+    /**
+     * @param spillDirectory where {@link BoundedCommandQueue.OverflowStrategy#SPILL} writes, {@code null} otherwise
+     * @param compact        each batch goes through {@link CommandCompactor} before it is sent
+     */
+    public record Options(int batchSize, Duration flushInterval, Mode mode, int queueCapacity,
+                          BoundedCommandQueue.OverflowStrategy overflowStrategy, Path spillDirectory,
+                          boolean virtualThreads, boolean compact) {
+
+        public Options {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be positive");
+            }
+            if (flushInterval.isNegative()) {
+                throw new IllegalArgumentException("flushInterval must not be negative");
+            }
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("queueCapacity must be positive");
+            }
+        }
+
+        public Options(int batchSize, Duration flushInterval, Mode mode) {
+            this(batchSize, flushInterval, mode, Integer.MAX_VALUE, BoundedCommandQueue.OverflowStrategy.BLOCK, null,
+                    false, false);
+        }
+
+        public static Options defaults() {
+            return new Options(128, Duration.ofMillis(5), Mode.PIPELINE);
+        }
+
+        public Options withQueue(int queueCapacity, BoundedCommandQueue.OverflowStrategy overflowStrategy,
+                                 Path spillDirectory) {
+            return new Options(batchSize, flushInterval, mode, queueCapacity, overflowStrategy, spillDirectory,
+                    virtualThreads, compact);
+        }
+
+        public Options withVirtualThreads(boolean virtualThreads) {
+            return new Options(batchSize, flushInterval, mode, queueCapacity, overflowStrategy, spillDirectory,
+                    virtualThreads, compact);
+        }
+
+        public Options withCompaction(boolean compact) {
+            return new Options(batchSize, flushInterval, mode, queueCapacity, overflowStrategy, spillDirectory,
+                    virtualThreads, compact);
+        }
+    }
+
+    /**
+     * @param results   the reply of each command in {@code commands} order, partial when {@code error} is set
+     * @param submitted the commands as submitted, {@code commands} being what was left of them after
+     *                  {@link Options#compact() compaction}
+     */
+    public record BatchResult(List<RedisCommandRecord> commands, List<Object> results, Throwable error,
+                              List<RedisCommandRecord> submitted) {
+
+        public BatchResult(List<RedisCommandRecord> commands, List<Object> results, Throwable error) {
+            this(commands, results, error, commands);
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final RedisConnection connection;
+    private final Options options;
+    private final Consumer<BatchResult> listener;
+    private final CommandMetrics metrics;
+    private final BoundedCommandQueue queue;
+    private final Thread replayThread;
+    private final Object progress = new Object();
+    private long submitted;
+    private long replayed;
+    private volatile boolean running = true;
+    private volatile boolean stopped;
+
+    public PipelinedCommandReplayer(RedisConnectionFactory connectionFactory, Options options, Consumer<BatchResult> listener) {
+        this(connectionFactory, options, listener, CommandMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the invocation of each command as {@link CommandMetrics.Stage#REPLAY}, in a pipeline
+     *                the time to queue it, the replies come with the batch
+     */
+    public PipelinedCommandReplayer(RedisConnectionFactory connectionFactory, Options options,
+                                    Consumer<BatchResult> listener, CommandMetrics metrics) {
+        this.connection = connectionFactory.getConnection();
+        this.options = options;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.queue = new BoundedCommandQueue(options.queueCapacity(), options.overflowStrategy(),
+                options.spillDirectory());
+        var threadBuilder = options.virtualThreads() ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        this.replayThread = threadBuilder.name("redis-command-replayer-" + THREAD_SEQUENCE.incrementAndGet())
+                .start(this::replayLoop);
+    }
+
+    /**
+     * Queues the command, waiting for room under {@link BoundedCommandQueue.OverflowStrategy#BLOCK}.
+     */
+    public void submit(RedisCommandRecord command) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("replayer is closed");
+        }
+        checkReplayThread();
+        synchronized (progress) {
+            submitted++;
+        }
+        RedisCommandRecord dropped;
+        try {
+            dropped = queue.put(command);
+        } catch (InterruptedException | RuntimeException e) {
+            completed(1);
+            throw e;
+        }
+        if (dropped != null) {
+            LOG.debug("queue full, dropped command {}", dropped.commandId());
+            completed(1);
+        }
+    }
+
+    /**
+     * @return the commands dropped under {@link BoundedCommandQueue.OverflowStrategy#DROP_OLDEST}
+     */
+    public long getDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    /**
+     * Blocks until every command submitted before this call has been replayed.
+     *
+     * @throws IllegalStateException when the replay thread stopped before replaying them
+     */
+    public void flush() throws InterruptedException {
+        synchronized (progress) {
+            long target = submitted;
+            while (replayed < target) {
+                checkReplayThread();
+                progress.wait();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        replayThread.join();
+        connection.close();
+        try {
+            queue.close();
+        } catch (IOException e) {
+            LOG.warn("failed to remove the spill file", e);
+        }
+    }
+
+    private void replayLoop() {
+        List<RedisCommandRecord> batch = new ArrayList<>(options.batchSize());
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    collect(batch);
+                } catch (RuntimeException e) {
+                    // the record read back from the spill file is lost, the ones collected before it are replayed
+                    LOG.error("failed to take a command from the queue, dropped it", e);
+                    completed(1);
+                }
+                if (!batch.isEmpty()) {
+                    replay(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            LOG.error("replay thread {} stopped", Thread.currentThread().getName(), e);
+            throw e;
+        } finally {
+            synchronized (progress) {
+                stopped = true;
+                progress.notifyAll();
+            }
+        }
+    }
+
+    private void collect(List<RedisCommandRecord> batch) throws InterruptedException {
+        var first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + options.flushInterval().toNanos();
+        while (batch.size() < options.batchSize()) {
+            if (queue.drainTo(batch, options.batchSize() - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            var next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void replay(List<RedisCommandRecord> batch) {
+        List<RedisCommandRecord> submitted = List.copyOf(batch);
+        List<RedisCommandRecord> commands = submitted;
+        BatchResult result;
+        try {
+            if (options.compact()) {
+                commands = List.copyOf(CommandCompactor.compact(batch));
+            }
+            result = new BatchResult(commands, execute(commands), null, submitted);
+        } catch (RedisPipelineException e) {
+            result = new BatchResult(commands, e.getPipelineResult(), e, submitted);
+        } catch (Throwable e) {
+            result = new BatchResult(commands, List.of(), e, submitted);
+        }
+        if (!result.isSuccess()) {
+            LOG.warn("replay of {} commands failed", commands.size(), result.error());
+        }
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            LOG.error("batch listener failed", e);
+        } finally {
+            // progress counts the submitted commands, before compaction
+            completed(batch.size());
+        }
+    }
+
+    private void checkReplayThread() {
+        if (stopped) {
+            throw new IllegalStateException("replay thread " + replayThread.getName() + " stopped");
+        }
+    }
+
+    private void completed(int commands) {
+        synchronized (progress) {
+            replayed += commands;
+            progress.notifyAll();
+        }
+    }
+
+    private List<Object> execute(List<RedisCommandRecord> commands) throws Throwable {
+        boolean pipeline = options.mode() == Mode.PIPELINE;
+        if (pipeline) {
+            connection.openPipeline();
+        } else {
+            connection.multi();
+        }
+        int invoked = 0;
+        try {
+            for (RedisCommandRecord command : commands) {
+                invoke(connection, command, metrics);
+                invoked++;
+            }
+        } catch (Throwable e) {
+            if (!pipeline) {
+                connection.discard();
+                throw e;
+            }
+            var results = closeQuietly();
+            if (e instanceof Exception exception && results != null && results.size() == invoked) {
+                // the commands before the failed one were sent, the ones after it were not
+                List<Object> partialResults = new ArrayList<>(results);
+                partialResults.add(exception);
+                throw new RedisPipelineException("replay failed at command " + invoked, exception, partialResults);
+            }
+            throw e;
+        }
+        return pipeline ? connection.closePipeline() : connection.exec();
+    }
+
+    /**
+     * @return the replies of the pipelined commands, {@code null} when the pipeline could not be closed
+     */
+    private List<Object> closeQuietly() {
+        try {
+            return connection.closePipeline();
+        } catch (RedisPipelineException e) {
+            return e.getPipelineResult();
+        } catch (RuntimeException e) {
+            LOG.debug("ignoring failure while closing the pipeline", e);
+            return null;
+        }
+    }
+
+    static Object invoke(RedisConnection connection, RedisCommandRecord command, CommandMetrics metrics) throws Throwable {
+        if (!metrics.isEnabled()) {
+            return invoke(connection, command);
+        }
+        long start = System.nanoTime();
+        try {
+            return invoke(connection, command);
+        } finally {
+            metrics.record(CommandMetrics.Stage.REPLAY, command.commandId(), System.nanoTime() - start);
+        }
+    }
+
+    static Object invoke(RedisConnection connection, RedisCommandRecord command) throws Throwable {
+        var invoker = RedisCommandsMethodHandles.getInvoker(command.commandId());
+        if (invoker == null) {
+            throw new IllegalArgumentException("unknown command id " + command.commandId());
+        }
+        return invoker.invoke(RedisCommandTargets.getTarget(command.commandId(), connection), command.args());
+    }
+}
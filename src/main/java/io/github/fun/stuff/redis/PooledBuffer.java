@@ -0,0 +1,52 @@
+package io.github.fun.stuff.redis;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted region of an {@link OffHeapBufferPool} slab. It starts with one reference, every
+ * {@link #retain()} must be paired with a {@link #release()}, and the region must not be touched after the last one.
+ */
+public final class PooledBuffer {
+
+    private final ByteBuffer buffer;
+    private final OffHeapBufferPool.Slab slab;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    PooledBuffer(ByteBuffer buffer, OffHeapBufferPool.Slab slab) {
+        this.buffer = buffer;
+        this.slab = slab;
+    }
+
+    /**
+     * @return the region, shared by every holder: use {@link ByteBuffer#duplicate()} to read it concurrently
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public PooledBuffer retain() {
+        int refs;
+        do {
+            refs = refCount.get();
+            if (refs <= 0) {
+                throw new IllegalStateException("buffer already released");
+            }
+        } while (!refCount.compareAndSet(refs, refs + 1));
+        return this;
+    }
+
+    public void release() {
+        int refs = refCount.decrementAndGet();
+        if (refs < 0) {
+            throw new IllegalStateException("buffer already released");
+        }
+        if (refs == 0 && slab != null) {
+            slab.release();
+        }
+    }
+
+    public int refCount() {
+        return refCount.get();
+    }
+}
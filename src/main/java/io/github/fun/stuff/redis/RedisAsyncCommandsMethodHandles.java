@@ -0,0 +1,129 @@
+package io.github.fun.stuff.redis;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Second handle registry, mapping command ids to the Lettuce {@link RedisClusterAsyncCommands} method of the same
+ * Redis command, so a command can be sent without waiting for its reply.
+ * <p>
+ * A Spring Data method maps when a Lettuce method has the same name ignoring case, the same arity and parameters
+ * that accept the Spring ones ({@code byte[]} for {@code K}/{@code V}, {@code byte[][]} for {@code K[]}/{@code V[]},
+ * {@code int} widened to {@code long}). Commands whose arguments differ in shape ({@code Expiration},
+ * {@code SetOption}, {@code Position}, ...) have no async handle and are replayed through
+ * {@link RedisCommandsMethodHandles}.
+ */
+public final class RedisAsyncCommandsMethodHandles {
+
+    private static final MethodHandles.Lookup PUBLIC_LOOKUP = MethodHandles.publicLookup();
+    private static final MethodHandle UNMAPPED = MethodHandles.constant(Object.class, null);
+    private static final RedisCommandInvoker UNMAPPED_INVOKER = (target, args) -> null;
+    private static final Map<String, List<Method>> ASYNC_METHODS = Arrays.stream(RedisClusterAsyncCommands.class.getMethods())
+            .filter(method -> !Modifier.isStatic(method.getModifiers()))
+            .filter(method -> RedisFuture.class.isAssignableFrom(method.getReturnType()))
+            .collect(Collectors.groupingBy(method -> method.getName().toLowerCase(Locale.ROOT)));
+    private static final MethodHandle[] METHOD_HANDLES = new MethodHandle[RedisCommandsMethodHandles.getCommandIdLimit()];
+    private static final RedisCommandInvoker[] INVOKERS = new RedisCommandInvoker[RedisCommandsMethodHandles.getCommandIdLimit()];
+
+    private RedisAsyncCommandsMethodHandles() {
+    }
+
+    /**
+     * @return the Lettuce method adapted to {@code (RedisClusterAsyncCommands, <Spring parameters>)RedisFuture}, or
+     * {@code null} when the command has no async counterpart
+     */
+    public static MethodHandle getMethodHandle(int commandId) {
+        if (commandId < 0 || commandId >= METHOD_HANDLES.length) {
+            return null;
+        }
+        MethodHandle methodHandle = METHOD_HANDLES[commandId];
+        if (methodHandle == null) {
+            methodHandle = resolve(commandId);
+            METHOD_HANDLES[commandId] = methodHandle;
+        }
+        return methodHandle == UNMAPPED ? null : methodHandle;
+    }
+
+    /**
+     * @return an invoker returning the {@link RedisFuture} of the command, or {@code null} when the command has no
+     * async counterpart
+     */
+    public static RedisCommandInvoker getInvoker(int commandId) {
+        if (commandId < 0 || commandId >= INVOKERS.length) {
+            return null;
+        }
+        RedisCommandInvoker invoker = INVOKERS[commandId];
+        if (invoker == null) {
+            var methodHandle = getMethodHandle(commandId);
+            invoker = methodHandle == null ? UNMAPPED_INVOKER
+                    : RedisCommandInvokers.spreadInvoker(RedisCommandInvokers.spread(methodHandle));
+            INVOKERS[commandId] = invoker;
+        }
+        return invoker == UNMAPPED_INVOKER ? null : invoker;
+    }
+
+    public static boolean isMapped(int commandId) {
+        return getMethodHandle(commandId) != null;
+    }
+
+    private static MethodHandle resolve(int commandId) {
+        var entry = RedisCommandsMethodHandles.getCommandEntry(commandId);
+        if (entry == null) {
+            return UNMAPPED;
+        }
+        MethodType springType = RedisCommandsMethodHandles.getMethodType(commandId);
+        var candidates = ASYNC_METHODS.getOrDefault(entry.methodName().toLowerCase(Locale.ROOT), List.of());
+        for (Method method : candidates) {
+            if (accepts(method.getParameterTypes(), springType)) {
+                try {
+                    return PUBLIC_LOOKUP.unreflect(method)
+                            .asType(springType.changeReturnType(RedisFuture.class)
+                                    .insertParameterTypes(0, RedisClusterAsyncCommands.class));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return UNMAPPED;
+    }
+
+    private static boolean accepts(Class<?>[] asyncTypes, MethodType springType) {
+        if (asyncTypes.length != springType.parameterCount()) {
+            return false;
+        }
+        for (int i = 0; i < asyncTypes.length; i++) {
+            if (!accepts(asyncTypes[i], springType.parameterType(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean accepts(Class<?> asyncType, Class<?> springType) {
+        if (asyncType == springType) {
+            return true;
+        }
+        if (asyncType.isPrimitive() || springType.isPrimitive()) {
+            return asyncType == long.class && springType == int.class;
+        }
+        if (asyncType == Object.class) {
+            // an erased K or V
+            return springType == byte[].class;
+        }
+        if (asyncType == Object[].class) {
+            return springType == byte[][].class;
+        }
+        return asyncType.isAssignableFrom(springType);
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.fun.stuff.redis;
+
+import io.microsphere.redis.spring.interceptor.RedisConnectionInterceptor;
+import io.microsphere.redis.spring.interceptor.RedisMethodContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Captures the successful write commands seen by {@code @EnableRedisInterceptor} into a sink.
+ * <p>
+ * Read commands are dropped with {@link RedisCommandSpecs#isWrite(int)} before anything is allocated.
+ * <p>
+ * The capture never fails the intercepted command: a method without a command id, or a record the sink rejects (an
+ * argument {@link RedisCommandCodec} does not support, ...) is logged once per command and counted with
+ * {@link CommandMetrics#recordDropped(int)}.
+ */
+public class RedisCommandCaptureInterceptor implements RedisConnectionInterceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisCommandCaptureInterceptor.class);
+
+    private final Consumer<RedisCommandRecord> sink;
+    private final CommandMetrics metrics;
+    private final Set<Object> reportedDrops = ConcurrentHashMap.newKeySet();
+
+    public RedisCommandCaptureInterceptor(Consumer<RedisCommandRecord> sink) {
+        this(sink, CommandMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the time spent in {@code sink} as {@link CommandMetrics.Stage#CAPTURE}
+     */
+    public RedisCommandCaptureInterceptor(Consumer<RedisCommandRecord> sink, CommandMetrics metrics) {
+        this.sink = sink;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void afterExecute(RedisMethodContext<RedisConnection> context, Object result, Throwable failure) {
+        if (failure != null) {
+            return;
+        }
+        int commandId = RedisCommandsMethodHandles.getCommandId(context.getMethod());
+        if (!RedisCommandSpecs.isWrite(commandId)) {
+            return;
+        }
+        if (commandId == RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID) {
+            metrics.recordDropped(commandId);
+            if (reportedDrops.add(context.getMethod())) {
+                LOG.warn("{} has no command id, it is not replicated", context.getMethod());
+            }
+            return;
+        }
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        try {
+            sink.accept(new RedisCommandRecord(commandId, context.getArgs()));
+        } catch (RuntimeException e) {
+            metrics.recordDropped(commandId);
+            if (reportedDrops.add(commandId)) {
+                LOG.warn("failed to capture {}, it is not replicated", context.getMethod(), e);
+            }
+        } finally {
+            if (metrics.isEnabled()) {
+                metrics.record(CommandMetrics.Stage.CAPTURE, commandId, System.nanoTime() - start);
+            }
+        }
+    }
+}
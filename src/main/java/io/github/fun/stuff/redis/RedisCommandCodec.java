@@ -0,0 +1,894 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.lang.invoke.MethodType;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary codec of {@link RedisCommandRecord}s.
+ * <p>
+ * A record is the varint command id followed by the arguments in declaration order. The parameter types come from the
+ * command id, so arguments carry no type information: lengths and integers are varints ({@code 0} is {@code null}
+ * for nullable values, otherwise {@code length + 1}), {@code byte[]} payloads are bulk copied into the target buffer,
+ * and only erased parameters ({@code Map}, {@code Set}, {@code Range}, ...) fall back to tagged values.
+ */
+public final class RedisCommandCodec {
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_BYTES = 1;
+    private static final int TAG_STRING = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_INTEGER = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_BOOLEAN = 6;
+    private static final int TAG_TUPLE = 7;
+    private static final int TAG_MAP = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_SET = 10;
+    private static final int TAG_BYTES_ARRAY = 11;
+    private static final int TAG_RANGE = 12;
+
+    private static final ArgumentCodec[][] ARGUMENT_CODECS = new ArgumentCodec[RedisCommandsMethodHandles.getCommandIdLimit()][];
+
+    private RedisCommandCodec() {
+    }
+
+    /**
+     * @return an upper bound of the encoded size of the command
+     */
+    public static int encodedSize(int commandId, Object[] args) {
+        var codecs = argumentCodecs(commandId);
+        int size = varintSize(commandId);
+        for (int i = 0; i < codecs.length; i++) {
+            size += codecs[i].size(args[i]);
+        }
+        return size;
+    }
+
+    public static void encode(int commandId, Object[] args, ByteBuffer buffer) {
+        var codecs = argumentCodecs(commandId);
+        if (args.length != codecs.length) {
+            throw new IllegalArgumentException("command " + commandId + " takes " + codecs.length + " arguments, got " + args.length);
+        }
+        writeVarint(buffer, commandId);
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i].write(args[i], buffer);
+        }
+    }
+
+    /**
+     * @return a flipped buffer from {@code pool} holding the encoded command, to be released by the caller
+     */
+    public static ByteBuffer encode(RedisCommandRecord record, ByteBufferPool pool) {
+        var buffer = pool.acquire(encodedSize(record.commandId(), record.args()));
+        encode(record.commandId(), record.args(), buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the command id is unknown
+     * @throws IllegalStateException    when the record is truncated or corrupted
+     */
+    public static RedisCommandRecord decode(ByteBuffer buffer) {
+        int commandId = readVarint(buffer);
+        var codecs = argumentCodecs(commandId);
+        Object[] args = new Object[codecs.length];
+        try {
+            for (int i = 0; i < codecs.length; i++) {
+                args[i] = codecs[i].read(buffer);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("truncated record of command " + commandId, e);
+        }
+        return new RedisCommandRecord(commandId, args);
+    }
+
+    private static ArgumentCodec[] argumentCodecs(int commandId) {
+        if (commandId < 0 || commandId >= ARGUMENT_CODECS.length) {
+            throw new IllegalArgumentException("unknown command id " + commandId);
+        }
+        ArgumentCodec[] codecs = ARGUMENT_CODECS[commandId];
+        if (codecs == null) {
+            MethodType methodType = RedisCommandsMethodHandles.getMethodType(commandId);
+            if (methodType == null) {
+                throw new IllegalArgumentException("unknown command id " + commandId);
+            }
+            codecs = new ArgumentCodec[methodType.parameterCount()];
+            for (int i = 0; i < codecs.length; i++) {
+                codecs[i] = argumentCodec(methodType.parameterType(i));
+            }
+            ARGUMENT_CODECS[commandId] = codecs;
+        }
+        return codecs;
+    }
+
+    static ArgumentCodec argumentCodec(Class<?> type) {
+        if (type == byte[].class) {
+            return BYTES;
+        }
+        if (type == byte[][].class) {
+            return BYTES_ARRAY;
+        }
+        if (type == String.class) {
+            return STRING;
+        }
+        if (type == String[].class) {
+            return STRING_ARRAY;
+        }
+        if (type == int[].class) {
+            return INT_ARRAY;
+        }
+        if (type == long.class) {
+            return LONG;
+        }
+        if (type == int.class) {
+            return INT;
+        }
+        if (type == double.class) {
+            return DOUBLE;
+        }
+        if (type == boolean.class) {
+            return BOOLEAN;
+        }
+        if (type == Long.class) {
+            return nullable(LONG);
+        }
+        if (type == Integer.class) {
+            return nullable(INT);
+        }
+        if (type == Double.class) {
+            return nullable(DOUBLE);
+        }
+        if (type == Boolean.class) {
+            return nullable(BOOLEAN);
+        }
+        if (type == RecordId[].class) {
+            return RECORD_IDS;
+        }
+        if (type == StreamOffset[].class) {
+            return STREAM_OFFSETS;
+        }
+        if (type == Expiration.class) {
+            return EXPIRATION;
+        }
+        if (type.isEnum()) {
+            return enumCodec(type.getEnumConstants());
+        }
+        if (type == Object.class || type == Map.class || type == Set.class || type == List.class
+                || type == Collection.class || type == Range.class) {
+            return TAGGED;
+        }
+        return unsupported(type);
+    }
+
+    interface ArgumentCodec {
+
+        int size(Object value);
+
+        void write(Object value, ByteBuffer buffer);
+
+        Object read(ByteBuffer buffer);
+    }
+
+    private static final ArgumentCodec BYTES = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            return value == null ? 1 : bytesSize((byte[]) value);
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            writeBytes(buffer, (byte[]) value);
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return readBytes(buffer);
+        }
+    };
+
+    private static final ArgumentCodec BYTES_ARRAY = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            if (value == null) {
+                return 1;
+            }
+            byte[][] array = (byte[][]) value;
+            int size = varintSize(array.length + 1);
+            for (byte[] bytes : array) {
+                size += bytes == null ? 1 : bytesSize(bytes);
+            }
+            return size;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                writeVarint(buffer, 0);
+                return;
+            }
+            byte[][] array = (byte[][]) value;
+            writeVarint(buffer, array.length + 1);
+            for (byte[] bytes : array) {
+                writeBytes(buffer, bytes);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int length = readLength(buffer);
+            if (length < 0) {
+                return null;
+            }
+            byte[][] array = new byte[length][];
+            for (int i = 0; i < length; i++) {
+                array[i] = readBytes(buffer);
+            }
+            return array;
+        }
+    };
+
+    private static final ArgumentCodec STRING = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            return value == null ? 1 : stringSize((String) value);
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            writeBytes(buffer, value == null ? null : ((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return readString(buffer);
+        }
+    };
+
+    private static final ArgumentCodec STRING_ARRAY = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            if (value == null) {
+                return 1;
+            }
+            String[] array = (String[]) value;
+            int size = varintSize(array.length + 1);
+            for (String string : array) {
+                size += string == null ? 1 : stringSize(string);
+            }
+            return size;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                writeVarint(buffer, 0);
+                return;
+            }
+            String[] array = (String[]) value;
+            writeVarint(buffer, array.length + 1);
+            for (String string : array) {
+                STRING.write(string, buffer);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int length = readLength(buffer);
+            if (length < 0) {
+                return null;
+            }
+            String[] array = new String[length];
+            for (int i = 0; i < length; i++) {
+                array[i] = readString(buffer);
+            }
+            return array;
+        }
+    };
+
+    private static final ArgumentCodec INT_ARRAY = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            if (value == null) {
+                return 1;
+            }
+            int[] array = (int[]) value;
+            int size = varintSize(array.length + 1);
+            for (int i : array) {
+                size += varlongSize(zigZag(i));
+            }
+            return size;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                writeVarint(buffer, 0);
+                return;
+            }
+            int[] array = (int[]) value;
+            writeVarint(buffer, array.length + 1);
+            for (int i : array) {
+                writeVarlong(buffer, zigZag(i));
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int length = readLength(buffer);
+            if (length < 0) {
+                return null;
+            }
+            int[] array = new int[length];
+            for (int i = 0; i < length; i++) {
+                array[i] = (int) unZigZag(readVarlong(buffer));
+            }
+            return array;
+        }
+    };
+
+    private static final ArgumentCodec LONG = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            return varlongSize(zigZag((Long) value));
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            writeVarlong(buffer, zigZag((Long) value));
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return unZigZag(readVarlong(buffer));
+        }
+    };
+
+    private static final ArgumentCodec INT = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            return varlongSize(zigZag((Integer) value));
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            writeVarlong(buffer, zigZag((Integer) value));
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return (int) unZigZag(readVarlong(buffer));
+        }
+    };
+
+    private static final ArgumentCodec DOUBLE = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            return Double.BYTES;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.putDouble((Double) value);
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+    };
+
+    private static final ArgumentCodec BOOLEAN = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            return 1;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            buffer.put((byte) ((Boolean) value ? 1 : 0));
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return buffer.get() != 0;
+        }
+    };
+
+    private static final ArgumentCodec RECORD_IDS = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            if (value == null) {
+                return 1;
+            }
+            RecordId[] recordIds = (RecordId[]) value;
+            int size = varintSize(recordIds.length + 1);
+            for (RecordId recordId : recordIds) {
+                size += stringSize(recordId.getValue());
+            }
+            return size;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                writeVarint(buffer, 0);
+                return;
+            }
+            RecordId[] recordIds = (RecordId[]) value;
+            writeVarint(buffer, recordIds.length + 1);
+            for (RecordId recordId : recordIds) {
+                STRING.write(recordId.getValue(), buffer);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int length = readLength(buffer);
+            if (length < 0) {
+                return null;
+            }
+            RecordId[] recordIds = new RecordId[length];
+            for (int i = 0; i < length; i++) {
+                recordIds[i] = RecordId.of(readString(buffer));
+            }
+            return recordIds;
+        }
+    };
+
+    private static final ArgumentCodec STREAM_OFFSETS = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            if (value == null) {
+                return 1;
+            }
+            StreamOffset<?>[] streamOffsets = (StreamOffset<?>[]) value;
+            int size = varintSize(streamOffsets.length + 1);
+            for (StreamOffset<?> streamOffset : streamOffsets) {
+                size += bytesSize((byte[]) streamOffset.getKey()) + stringSize(streamOffset.getOffset().getOffset());
+            }
+            return size;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                writeVarint(buffer, 0);
+                return;
+            }
+            StreamOffset<?>[] streamOffsets = (StreamOffset<?>[]) value;
+            writeVarint(buffer, streamOffsets.length + 1);
+            for (StreamOffset<?> streamOffset : streamOffsets) {
+                writeBytes(buffer, (byte[]) streamOffset.getKey());
+                STRING.write(streamOffset.getOffset().getOffset(), buffer);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int length = readLength(buffer);
+            if (length < 0) {
+                return null;
+            }
+            StreamOffset<?>[] streamOffsets = new StreamOffset<?>[length];
+            for (int i = 0; i < length; i++) {
+                byte[] key = readBytes(buffer);
+                streamOffsets[i] = StreamOffset.create(key, ReadOffset.from(readString(buffer)));
+            }
+            return streamOffsets;
+        }
+    };
+
+    private static final ArgumentCodec EXPIRATION = new ArgumentCodec() {
+        private static final int NULL = 0;
+        private static final int KEEP_TTL = 1;
+        private static final int PERSISTENT = 2;
+        private static final int EXPIRE = 3;
+        /**
+         * {@code EXAT}/{@code PXAT}, the time is a unix timestamp rather than a TTL.
+         */
+        private static final int EXPIRE_AT = 4;
+        private static final TimeUnit[] TIME_UNITS = TimeUnit.values();
+
+        @Override
+        public int size(Object value) {
+            if (value instanceof Expiration expiration && !expiration.isKeepTtl() && !expiration.isPersistent()) {
+                return 2 + varlongSize(zigZag(expiration.getExpirationTime()));
+            }
+            return 1;
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                buffer.put((byte) NULL);
+            } else {
+                Expiration expiration = (Expiration) value;
+                if (expiration.isKeepTtl()) {
+                    buffer.put((byte) KEEP_TTL);
+                } else if (expiration.isPersistent()) {
+                    buffer.put((byte) PERSISTENT);
+                } else {
+                    buffer.put((byte) (expiration.isUnixTimestamp() ? EXPIRE_AT : EXPIRE));
+                    buffer.put((byte) expiration.getTimeUnit().ordinal());
+                    writeVarlong(buffer, zigZag(expiration.getExpirationTime()));
+                }
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            int tag = buffer.get();
+            return switch (tag) {
+                case NULL -> null;
+                case KEEP_TTL -> Expiration.keepTtl();
+                case PERSISTENT -> Expiration.persistent();
+                case EXPIRE, EXPIRE_AT -> {
+                    int ordinal = buffer.get();
+                    if (ordinal < 0 || ordinal >= TIME_UNITS.length) {
+                        throw new IllegalStateException("corrupted expiration time unit " + ordinal);
+                    }
+                    TimeUnit timeUnit = TIME_UNITS[ordinal];
+                    long time = unZigZag(readVarlong(buffer));
+                    yield tag == EXPIRE_AT ? Expiration.unixTimestamp(time, timeUnit) : Expiration.from(time, timeUnit);
+                }
+                default -> throw new IllegalStateException("corrupted expiration");
+            };
+        }
+    };
+
+    private static final ArgumentCodec TAGGED = new ArgumentCodec() {
+        @Override
+        public int size(Object value) {
+            return taggedSize(value);
+        }
+
+        @Override
+        public void write(Object value, ByteBuffer buffer) {
+            writeTagged(buffer, value);
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer) {
+            return readTagged(buffer);
+        }
+    };
+
+    private static ArgumentCodec nullable(ArgumentCodec codec) {
+        return new ArgumentCodec() {
+            @Override
+            public int size(Object value) {
+                return value == null ? 1 : 1 + codec.size(value);
+            }
+
+            @Override
+            public void write(Object value, ByteBuffer buffer) {
+                buffer.put((byte) (value == null ? 0 : 1));
+                if (value != null) {
+                    codec.write(value, buffer);
+                }
+            }
+
+            @Override
+            public Object read(ByteBuffer buffer) {
+                return buffer.get() == 0 ? null : codec.read(buffer);
+            }
+        };
+    }
+
+    private static ArgumentCodec enumCodec(Object[] constants) {
+        return new ArgumentCodec() {
+            @Override
+            public int size(Object value) {
+                return value == null ? 1 : varintSize(((Enum<?>) value).ordinal() + 1);
+            }
+
+            @Override
+            public void write(Object value, ByteBuffer buffer) {
+                writeVarint(buffer, value == null ? 0 : ((Enum<?>) value).ordinal() + 1);
+            }
+
+            @Override
+            public Object read(ByteBuffer buffer) {
+                int ordinal = readVarint(buffer) - 1;
+                if (ordinal >= constants.length || ordinal < -1) {
+                    throw new IllegalStateException("corrupted enum ordinal " + ordinal);
+                }
+                return ordinal < 0 ? null : constants[ordinal];
+            }
+        };
+    }
+
+    private static ArgumentCodec unsupported(Class<?> type) {
+        return new ArgumentCodec() {
+            @Override
+            public int size(Object value) {
+                throw new IllegalArgumentException("unsupported parameter type " + type.getName());
+            }
+
+            @Override
+            public void write(Object value, ByteBuffer buffer) {
+                throw new IllegalArgumentException("unsupported parameter type " + type.getName());
+            }
+
+            @Override
+            public Object read(ByteBuffer buffer) {
+                throw new IllegalArgumentException("unsupported parameter type " + type.getName());
+            }
+        };
+    }
+
+    private static int taggedSize(Object value) {
+        if (value == null) {
+            return 1;
+        }
+        if (value instanceof byte[] bytes) {
+            return 1 + bytesSize(bytes);
+        }
+        if (value instanceof String string) {
+            return 1 + stringSize(string);
+        }
+        if (value instanceof Long || value instanceof Integer) {
+            return 1 + varlongSize(zigZag(((Number) value).longValue()));
+        }
+        if (value instanceof Double) {
+            return 1 + Double.BYTES;
+        }
+        if (value instanceof Boolean) {
+            return 2;
+        }
+        if (value instanceof Tuple tuple) {
+            return 1 + bytesSize(tuple.getValue()) + Double.BYTES;
+        }
+        if (value instanceof byte[][] array) {
+            return BYTES_ARRAY.size(array) + 1;
+        }
+        if (value instanceof Map<?, ?> map) {
+            int size = 1 + varintSize(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += taggedSize(entry.getKey()) + taggedSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            int size = 1 + varintSize(collection.size());
+            for (Object element : collection) {
+                size += taggedSize(element);
+            }
+            return size;
+        }
+        if (value instanceof Range<?> range) {
+            return 3 + taggedSize(range.getLowerBound().getValue().orElse(null))
+                    + taggedSize(range.getUpperBound().getValue().orElse(null));
+        }
+        throw new IllegalArgumentException("unsupported argument type " + value.getClass().getName());
+    }
+
+    private static void writeTagged(ByteBuffer buffer, Object value) {
+        if (value == null) {
+            buffer.put((byte) TAG_NULL);
+        } else if (value instanceof byte[] bytes) {
+            buffer.put((byte) TAG_BYTES);
+            writeBytes(buffer, bytes);
+        } else if (value instanceof String string) {
+            buffer.put((byte) TAG_STRING);
+            STRING.write(string, buffer);
+        } else if (value instanceof Long l) {
+            buffer.put((byte) TAG_LONG);
+            writeVarlong(buffer, zigZag(l));
+        } else if (value instanceof Integer i) {
+            buffer.put((byte) TAG_INTEGER);
+            writeVarlong(buffer, zigZag(i));
+        } else if (value instanceof Double d) {
+            buffer.put((byte) TAG_DOUBLE);
+            buffer.putDouble(d);
+        } else if (value instanceof Boolean b) {
+            buffer.put((byte) TAG_BOOLEAN);
+            buffer.put((byte) (b ? 1 : 0));
+        } else if (value instanceof Tuple tuple) {
+            buffer.put((byte) TAG_TUPLE);
+            writeBytes(buffer, tuple.getValue());
+            buffer.putDouble(tuple.getScore());
+        } else if (value instanceof byte[][] array) {
+            buffer.put((byte) TAG_BYTES_ARRAY);
+            BYTES_ARRAY.write(array, buffer);
+        } else if (value instanceof Map<?, ?> map) {
+            buffer.put((byte) TAG_MAP);
+            writeVarint(buffer, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeTagged(buffer, entry.getKey());
+                writeTagged(buffer, entry.getValue());
+            }
+        } else if (value instanceof Collection<?> collection) {
+            buffer.put((byte) (collection instanceof Set ? TAG_SET : TAG_LIST));
+            writeVarint(buffer, collection.size());
+            for (Object element : collection) {
+                writeTagged(buffer, element);
+            }
+        } else if (value instanceof Range<?> range) {
+            buffer.put((byte) TAG_RANGE);
+            writeBound(buffer, range.getLowerBound());
+            writeBound(buffer, range.getUpperBound());
+        } else {
+            throw new IllegalArgumentException("unsupported argument type " + value.getClass().getName());
+        }
+    }
+
+    private static void writeBound(ByteBuffer buffer, Range.Bound<?> bound) {
+        buffer.put((byte) (!bound.isBounded() ? 0 : bound.isInclusive() ? 1 : 2));
+        writeTagged(buffer, bound.getValue().orElse(null));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readTagged(ByteBuffer buffer) {
+        int tag = buffer.get();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_BYTES -> readBytes(buffer);
+            case TAG_STRING -> readString(buffer);
+            case TAG_LONG -> unZigZag(readVarlong(buffer));
+            case TAG_INTEGER -> (int) unZigZag(readVarlong(buffer));
+            case TAG_DOUBLE -> buffer.getDouble();
+            case TAG_BOOLEAN -> buffer.get() != 0;
+            case TAG_TUPLE -> {
+                byte[] value = readBytes(buffer);
+                yield new DefaultTuple(value, buffer.getDouble());
+            }
+            case TAG_BYTES_ARRAY -> BYTES_ARRAY.read(buffer);
+            case TAG_MAP -> {
+                int size = readCount(buffer);
+                Map<Object, Object> map = new LinkedHashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    map.put(readTagged(buffer), readTagged(buffer));
+                }
+                yield map;
+            }
+            case TAG_LIST, TAG_SET -> {
+                int size = readCount(buffer);
+                Collection<Object> collection = tag == TAG_SET ? new LinkedHashSet<>(size * 2) : new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    collection.add(readTagged(buffer));
+                }
+                yield collection;
+            }
+            case TAG_RANGE -> {
+                Range.Bound lower = readBound(buffer);
+                Range.Bound upper = readBound(buffer);
+                yield Range.of(lower, upper);
+            }
+            default -> throw new IllegalStateException("corrupted argument tag " + tag);
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Range.Bound<?> readBound(ByteBuffer buffer) {
+        int kind = buffer.get();
+        Comparable value = (Comparable) readTagged(buffer);
+        return switch (kind) {
+            case 0 -> Range.Bound.unbounded();
+            case 1 -> Range.Bound.inclusive(value);
+            case 2 -> Range.Bound.exclusive(value);
+            default -> throw new IllegalStateException("corrupted range bound " + kind);
+        };
+    }
+
+    private static int bytesSize(byte[] bytes) {
+        return varintSize(bytes.length + 1) + bytes.length;
+    }
+
+    private static int stringSize(String string) {
+        // upper bound, UTF-8 takes at most 3 bytes per UTF-16 char
+        int length = string.length() * 3;
+        return varintSize(length + 1) + length;
+    }
+
+    private static void writeBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            writeVarint(buffer, 0);
+            return;
+        }
+        writeVarint(buffer, bytes.length + 1);
+        buffer.put(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = readLength(buffer);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads a nullable {@code length + 1} varint, {@code -1} for {@code null}. Every element takes at least one byte,
+     * so a length beyond the remaining bytes is a corrupted record rather than a huge allocation.
+     */
+    private static int readLength(ByteBuffer buffer) {
+        int length = readVarint(buffer) - 1;
+        if (length < -1 || length > buffer.remaining()) {
+            throw new IllegalStateException("corrupted length " + length + ", " + buffer.remaining() + " bytes remaining");
+        }
+        return length;
+    }
+
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalStateException("corrupted size " + count + ", " + buffer.remaining() + " bytes remaining");
+        }
+        return count;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = readBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int varintSize(int value) {
+        return varlongSize(value & 0xFFFFFFFFL);
+    }
+
+    static int varlongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarint(ByteBuffer buffer, int value) {
+        writeVarlong(buffer, value & 0xFFFFFFFFL);
+    }
+
+    static void writeVarlong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int readVarint(ByteBuffer buffer) {
+        return (int) readVarlong(buffer);
+    }
+
+    static long readVarlong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("malformed varint");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
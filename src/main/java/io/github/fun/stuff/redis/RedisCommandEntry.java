@@ -0,0 +1,8 @@
+package io.github.fun.stuff.redis;
+
+/**
+ * @param parameterNames the comma separated parameter names, used to locate the key arguments
+ */
+record RedisCommandEntry(int id, String declaringClass, String methodName, String descriptor, String parameterNames,
+                         String methodSignature) {
+}
@@ -0,0 +1,83 @@
+package io.github.fun.stuff.redis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Two-way registry between Redis command method signatures and their dense {@code int} ids.
+ * <p>
+ * The registry is checked in as {@value #REGISTRY_RESOURCE}; ids are only ever appended, so the same signature keeps
+ * its id across builds and Spring Data Redis upgrades. The build fails when a signature is missing from it.
+ */
+final class RedisCommandIds {
+
+    static final String REGISTRY_RESOURCE = "META-INF/redis-command-ids.txt";
+
+    private RedisCommandIds() {
+    }
+
+    static Map<String, Integer> load(ClassLoader classLoader) {
+        var resource = classLoader.getResourceAsStream(REGISTRY_RESOURCE);
+        if (resource == null) {
+            return new LinkedHashMap<>();
+        }
+        try (var reader = new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8))) {
+            return read(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Map<String, Integer> read(BufferedReader reader) throws IOException {
+        Map<String, Integer> registry = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            int separator = line.indexOf('\t');
+            if (separator < 0) {
+                throw new IllegalStateException("malformed line in " + REGISTRY_RESOURCE + ": " + line);
+            }
+            int id = Integer.parseInt(line.substring(0, separator));
+            if (registry.put(line.substring(separator + 1), id) != null || registry.size() != id + 1) {
+                throw new IllegalStateException("ids in " + REGISTRY_RESOURCE + " must be unique and dense: " + line);
+            }
+        }
+        return registry;
+    }
+
+    static void write(Map<String, Integer> registry, Writer writer) throws IOException {
+        writer.write("""
+                # Stable Redis command ids, checked by RedisCommandsIndexGenerator during the build.
+                # New signatures fail the build, the generator appends them with the next free id to
+                # target/redis-command-ids.txt, review it and copy it here; never renumber or remove a line,
+                # ids of signatures that disappear are kept so that replicated records stay decodable.
+                # id\tsignature
+                """);
+        var byId = new TreeMap<Integer, String>();
+        registry.forEach((signature, id) -> byId.put(id, signature));
+        for (var entry : byId.entrySet()) {
+            writer.append(String.valueOf(entry.getKey())).append('\t').append(entry.getValue()).append('\n');
+        }
+    }
+
+    /**
+     * Adds the signatures that are not registered yet, in lexical order, after the highest existing id.
+     */
+    static void assign(Map<String, Integer> registry, Collection<String> methodSignatures) {
+        methodSignatures.stream()
+                .filter(methodSignature -> !registry.containsKey(methodSignature))
+                .sorted()
+                .distinct()
+                .forEach(methodSignature -> registry.put(methodSignature, registry.size()));
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.fun.stuff.redis;
+
+/**
+ * Invokes one Redis command on its {@code Redis*Commands} target without {@code invokeWithArguments}.
+ *
+ * @see RedisCommandsMethodHandles#getInvoker(int)
+ */
+@FunctionalInterface
+public interface RedisCommandInvoker {
+
+    Object invoke(Object target, Object[] args) throws Throwable;
+}
@@ -0,0 +1,127 @@
+package io.github.fun.stuff.redis;
+
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Builds {@link RedisCommandInvoker}s from command method handles.
+ * <p>
+ * {@link LambdaMetafactory} cannot spread an {@code Object[]}, so commands with up to {@value #MAX_GENERATED_ARITY}
+ * arguments get a generated fixed-arity class ({@code Invoker0} .. {@code Invoker6}) that casts and unboxes the
+ * arguments itself, and only the {@code args[i]} loads are left in the adapter. Everything else, including
+ * {@code void} commands which the metafactory cannot adapt to an {@code Object} return, is invoked through a handle
+ * pre-adapted with {@code asSpreader}/{@code asType} to {@code (Object, Object[])Object}.
+ */
+final class RedisCommandInvokers {
+
+    static final int MAX_GENERATED_ARITY = 6;
+
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Class<?>[] INVOKER_TYPES = {
+            Invoker0.class, Invoker1.class, Invoker2.class, Invoker3.class, Invoker4.class, Invoker5.class, Invoker6.class
+    };
+
+    private RedisCommandInvokers() {
+    }
+
+    static MethodHandle spread(MethodHandle methodHandle) {
+        int arity = methodHandle.type().parameterCount() - 1;
+        return methodHandle.asSpreader(Object[].class, arity).asType(SPREAD_TYPE);
+    }
+
+    static RedisCommandInvoker generate(MethodHandle methodHandle) {
+        var methodType = methodHandle.type();
+        int arity = methodType.parameterCount() - 1;
+        if (arity > MAX_GENERATED_ARITY || methodType.returnType() == void.class) {
+            return spreadInvoker(spread(methodHandle));
+        }
+        Object invoker;
+        try {
+            var invokerType = INVOKER_TYPES[arity];
+            var callSite = LambdaMetafactory.metafactory(LOOKUP, "invoke",
+                    MethodType.methodType(invokerType),
+                    MethodType.genericMethodType(arity + 1),
+                    methodHandle,
+                    methodType.wrap());
+            invoker = callSite.getTarget().invoke();
+        } catch (LambdaConversionException e) {
+            return spreadInvoker(spread(methodHandle));
+        } catch (Throwable e) {
+            throw new IllegalStateException("can not generate invoker for " + methodHandle, e);
+        }
+        return switch (arity) {
+            case 0 -> {
+                var invoker0 = (Invoker0) invoker;
+                yield (target, args) -> invoker0.invoke(target);
+            }
+            case 1 -> {
+                var invoker1 = (Invoker1) invoker;
+                yield (target, args) -> invoker1.invoke(target, args[0]);
+            }
+            case 2 -> {
+                var invoker2 = (Invoker2) invoker;
+                yield (target, args) -> invoker2.invoke(target, args[0], args[1]);
+            }
+            case 3 -> {
+                var invoker3 = (Invoker3) invoker;
+                yield (target, args) -> invoker3.invoke(target, args[0], args[1], args[2]);
+            }
+            case 4 -> {
+                var invoker4 = (Invoker4) invoker;
+                yield (target, args) -> invoker4.invoke(target, args[0], args[1], args[2], args[3]);
+            }
+            case 5 -> {
+                var invoker5 = (Invoker5) invoker;
+                yield (target, args) -> invoker5.invoke(target, args[0], args[1], args[2], args[3], args[4]);
+            }
+            case 6 -> {
+                var invoker6 = (Invoker6) invoker;
+                yield (target, args) -> invoker6.invoke(target, args[0], args[1], args[2], args[3], args[4], args[5]);
+            }
+            default -> throw new IllegalStateException("arity " + arity);
+        };
+    }
+
+    static RedisCommandInvoker spreadInvoker(MethodHandle spreadMethodHandle) {
+        return (target, args) -> (Object) spreadMethodHandle.invokeExact(target, args);
+    }
+
+    @FunctionalInterface
+    interface Invoker0 {
+        Object invoke(Object target);
+    }
+
+    @FunctionalInterface
+    interface Invoker1 {
+        Object invoke(Object target, Object a0);
+    }
+
+    @FunctionalInterface
+    interface Invoker2 {
+        Object invoke(Object target, Object a0, Object a1);
+    }
+
+    @FunctionalInterface
+    interface Invoker3 {
+        Object invoke(Object target, Object a0, Object a1, Object a2);
+    }
+
+    @FunctionalInterface
+    interface Invoker4 {
+        Object invoke(Object target, Object a0, Object a1, Object a2, Object a3);
+    }
+
+    @FunctionalInterface
+    interface Invoker5 {
+        Object invoke(Object target, Object a0, Object a1, Object a2, Object a3, Object a4);
+    }
+
+    @FunctionalInterface
+    interface Invoker6 {
+        Object invoke(Object target, Object a0, Object a1, Object a2, Object a3, Object a4, Object a5);
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.fun.stuff.redis;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.data.redis.connection.stream.Record;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Locates the key arguments of a command from the keys column of the bundled {@value RedisCommandSpecs#SPEC_RESOURCE},
+ * and hashes them into slots with the Redis Cluster CRC16 so that keys sharing a {@code {hash tag}} always land
+ * together.
+ * <p>
+ * A key argument is a {@code byte[]} key, a {@code byte[][]} of keys, possibly only its first {@code numKeys}
+ * elements ({@code EVAL}), the keys of a {@code Map} ({@code MSET}), the stream of a {@link Record} ({@code XADD}) or
+ * the keys of {@link StreamOffset}s ({@code XREADGROUP}).
+ */
+public final class RedisCommandKeys {
+
+    /**
+     * No key argument, or keys spread over several slots.
+     */
+    public static final int NO_SLOT = -1;
+
+    private static final int[] NO_KEYS = new int[0];
+    private static final KeyArgument[] NO_KEY_ARGUMENTS = new KeyArgument[0];
+    private static final KeyArgument[] UNKNOWN_KEY_ARGUMENTS = new KeyArgument[0];
+    private static final KeyArgument[][] KEY_ARGUMENTS = new KeyArgument[RedisCommandsMethodHandles.getCommandIdLimit()][];
+
+    /**
+     * @param countPosition the position of the number of keys leading the argument, {@code -1} when all are keys
+     */
+    private record KeyArgument(int position, int countPosition) {
+    }
+
+    private RedisCommandKeys() {
+    }
+
+    /**
+     * @return the positions of the key arguments of the command, empty when it has none or is unknown
+     */
+    public static int[] getKeyPositions(int commandId) {
+        var keyArguments = keyArguments(commandId);
+        if (keyArguments.length == 0) {
+            return NO_KEYS;
+        }
+        return Arrays.stream(keyArguments).mapToInt(KeyArgument::position).toArray();
+    }
+
+    /**
+     * @return whether the spec says the command has no key, {@code false} for unknown commands
+     */
+    public static boolean isKeyless(int commandId) {
+        return keyArguments(commandId) == NO_KEY_ARGUMENTS;
+    }
+
+    /**
+     * @return the keys of the command, empty when it has none, {@code null} when they can not be resolved
+     */
+    public static List<byte[]> getKeys(RedisCommandRecord command) {
+        var keyArguments = keyArguments(command.commandId());
+        if (keyArguments == UNKNOWN_KEY_ARGUMENTS) {
+            return null;
+        }
+        List<byte[]> keys = new ArrayList<>(keyArguments.length);
+        for (KeyArgument keyArgument : keyArguments) {
+            if (!addKeys(command.args(), keyArgument, keys)) {
+                return null;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return the single cluster slot of all the keys of the command, or {@link #NO_SLOT}
+     */
+    public static int getSlot(RedisCommandRecord command) {
+        var keys = getKeys(command);
+        if (keys == null || keys.isEmpty()) {
+            return NO_SLOT;
+        }
+        int slot = SlotHash.getSlot(keys.get(0));
+        for (int i = 1; i < keys.size(); i++) {
+            if (SlotHash.getSlot(keys.get(i)) != slot) {
+                return NO_SLOT;
+            }
+        }
+        return slot;
+    }
+
+    private static boolean addKeys(Object[] args, KeyArgument keyArgument, List<byte[]> keys) {
+        Object argument = args[keyArgument.position()];
+        if (argument instanceof byte[] key) {
+            keys.add(key);
+            return true;
+        }
+        if (argument instanceof byte[][] array) {
+            int count = array.length;
+            if (keyArgument.countPosition() >= 0) {
+                if (!(args[keyArgument.countPosition()] instanceof Number number)
+                        || number.intValue() < 0 || number.intValue() > array.length) {
+                    return false;
+                }
+                count = number.intValue();
+            }
+            return addAll(Arrays.asList(array).subList(0, count), keys);
+        }
+        if (argument instanceof Map<?, ?> map) {
+            return addAll(map.keySet(), keys);
+        }
+        if (argument instanceof Record<?, ?> record) {
+            return addAll(Collections.singletonList(record.getStream()), keys);
+        }
+        if (argument instanceof StreamOffset<?>[] streamOffsets) {
+            return addAll(Arrays.stream(streamOffsets).map(StreamOffset::getKey).toList(), keys);
+        }
+        return false;
+    }
+
+    private static boolean addAll(Iterable<?> candidates, List<byte[]> keys) {
+        for (Object candidate : candidates) {
+            if (!(candidate instanceof byte[] key)) {
+                return false;
+            }
+            keys.add(key);
+        }
+        return true;
+    }
+
+    private static KeyArgument[] keyArguments(int commandId) {
+        if (commandId < 0 || commandId >= KEY_ARGUMENTS.length) {
+            return UNKNOWN_KEY_ARGUMENTS;
+        }
+        var keyArguments = KEY_ARGUMENTS[commandId];
+        if (keyArguments == null) {
+            keyArguments = resolveKeyArguments(commandId);
+            KEY_ARGUMENTS[commandId] = keyArguments;
+        }
+        return keyArguments;
+    }
+
+    private static KeyArgument[] resolveKeyArguments(int commandId) {
+        var keyNames = RedisCommandSpecs.getKeyNames(commandId);
+        if (keyNames == null) {
+            return UNKNOWN_KEY_ARGUMENTS;
+        }
+        if (keyNames.isEmpty()) {
+            return NO_KEY_ARGUMENTS;
+        }
+        var entry = RedisCommandsMethodHandles.getCommandEntry(commandId);
+        var parameterNames = Arrays.asList(entry.parameterNames().split(","));
+        List<KeyArgument> keyArguments = new ArrayList<>(keyNames.size());
+        for (String keyName : keyNames) {
+            int separator = keyName.indexOf(':');
+            int position = parameterNames.indexOf(separator < 0 ? keyName : keyName.substring(0, separator));
+            if (position < 0) {
+                // the spec line covers every overload, this one does not take that parameter
+                continue;
+            }
+            int countPosition = separator < 0 ? -1 : parameterNames.indexOf(keyName.substring(separator + 1));
+            if (separator >= 0 && countPosition < 0) {
+                throw new IllegalStateException("unknown count parameter of " + keyName + " in "
+                        + RedisCommandSpecs.SPEC_RESOURCE);
+            }
+            keyArguments.add(new KeyArgument(position, countPosition));
+        }
+        return keyArguments.isEmpty() ? UNKNOWN_KEY_ARGUMENTS : keyArguments.toArray(KeyArgument[]::new);
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.fun.stuff.redis;
+
+/**
+ * A captured Redis command: its {@link RedisCommandsMethodHandles} command id and the arguments, without the target.
+ */
+public record RedisCommandRecord(int commandId, Object[] args) {
+}
@@ -0,0 +1,14 @@
+package io.github.fun.stuff.redis;
+
+/**
+ * Classification of one command, from the bundled {@value RedisCommandSpecs#SPEC_RESOURCE}.
+ *
+ * @param command      the Redis command name, {@code -} when the method sends no command
+ * @param overwrite    the command replaces its keys whole, earlier writes to them can be dropped
+ * @param transfer     the command moves the value of its key elsewhere, earlier writes to it must be kept
+ * @param connection   the command changes the state of the connection it is sent on ({@code SELECT}, {@code MULTI})
+ * @param keyPositions the positions of the key arguments, see {@link RedisCommandKeys}
+ */
+public record RedisCommandSpec(String command, boolean write, boolean blocking, boolean idempotent, boolean overwrite,
+                               boolean transfer, boolean connection, int[] keyPositions) {
+}
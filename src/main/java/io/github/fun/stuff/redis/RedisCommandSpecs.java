@@ -0,0 +1,122 @@
+package io.github.fun.stuff.redis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read/write, blocking and idempotency metadata of every command id, loaded from the bundled
+ * {@value #SPEC_RESOURCE} so that no {@code ACL CAT} round trip is needed.
+ * <p>
+ * {@link #isWrite(int)} is a plain array load, cheap enough to drop read commands before anything is captured.
+ */
+public final class RedisCommandSpecs {
+
+    static final String SPEC_RESOURCE = "META-INF/redis-command-spec.txt";
+
+    private static final RedisCommandSpec UNKNOWN = new RedisCommandSpec("-", true, false, false, false, false, false,
+            new int[0]);
+
+    private static final Map<String, RawSpec> RAW_SPECS;
+    private static final boolean[] WRITE_COMMANDS;
+    private static final RedisCommandSpec[] SPECS;
+
+    static {
+        RAW_SPECS = load(RedisCommandSpecs.class.getClassLoader());
+        int limit = RedisCommandsMethodHandles.getCommandIdLimit();
+        WRITE_COMMANDS = new boolean[limit];
+        SPECS = new RedisCommandSpec[limit];
+        for (int commandId = 0; commandId < limit; commandId++) {
+            var entry = RedisCommandsMethodHandles.getCommandEntry(commandId);
+            WRITE_COMMANDS[commandId] = entry == null || rawSpec(entry).write();
+        }
+    }
+
+    private RedisCommandSpecs() {
+    }
+
+    /**
+     * @return whether the command changes data and has to be replicated, {@code true} for unknown ids like methods
+     * missing from the spec
+     */
+    public static boolean isWrite(int commandId) {
+        return commandId < 0 || commandId >= WRITE_COMMANDS.length || WRITE_COMMANDS[commandId];
+    }
+
+    public static RedisCommandSpec getSpec(int commandId) {
+        var entry = RedisCommandsMethodHandles.getCommandEntry(commandId);
+        if (entry == null) {
+            return UNKNOWN;
+        }
+        RedisCommandSpec spec = SPECS[commandId];
+        if (spec == null) {
+            var rawSpec = rawSpec(entry);
+            spec = new RedisCommandSpec(rawSpec.command(), rawSpec.write(), rawSpec.blocking(), rawSpec.idempotent(),
+                    rawSpec.overwrite(), rawSpec.transfer(), rawSpec.connection(),
+                    RedisCommandKeys.getKeyPositions(commandId));
+            SPECS[commandId] = spec;
+        }
+        return spec;
+    }
+
+    /**
+     * @return the names of the key parameters from the keys column, empty when the command has no key, {@code null}
+     * for unknown ids and methods missing from the spec
+     */
+    static List<String> getKeyNames(int commandId) {
+        var entry = RedisCommandsMethodHandles.getCommandEntry(commandId);
+        return entry == null ? null : rawSpec(entry).keys();
+    }
+
+    private static RawSpec rawSpec(RedisCommandEntry entry) {
+        int arity = entry.parameterNames().isEmpty() ? 0 : entry.parameterNames().split(",").length;
+        var spec = RAW_SPECS.get(entry.methodName() + "/" + arity);
+        if (spec == null) {
+            spec = RAW_SPECS.get(entry.methodName());
+        }
+        return spec == null ? RawSpec.UNKNOWN : spec;
+    }
+
+    static Map<String, RawSpec> load(ClassLoader classLoader) {
+        var resource = classLoader.getResourceAsStream(SPEC_RESOURCE);
+        if (resource == null) {
+            throw new IllegalStateException(SPEC_RESOURCE + " is missing");
+        }
+        Map<String, RawSpec> specs = new HashMap<>();
+        try (var reader = new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                var columns = line.split("\t");
+                if (columns.length != 4) {
+                    throw new IllegalStateException("malformed line in " + SPEC_RESOURCE + ": " + line);
+                }
+                var flags = Set.of(columns[2].split(","));
+                var keys = columns[3].equals("-") ? List.<String>of() : List.of(columns[3].split(","));
+                specs.put(columns[0], new RawSpec(columns[1], flags.contains("write"), flags.contains("blocking"),
+                        flags.contains("idempotent"), flags.contains("overwrite"), flags.contains("transfer"),
+                        flags.contains("connection"), keys));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return specs;
+    }
+
+    /**
+     * @param keys the keys column, {@code null} when unknown
+     */
+    record RawSpec(String command, boolean write, boolean blocking, boolean idempotent, boolean overwrite,
+                   boolean transfer, boolean connection, List<String> keys) {
+
+        static final RawSpec UNKNOWN = new RawSpec("-", true, false, false, false, false, false, null);
+    }
+}
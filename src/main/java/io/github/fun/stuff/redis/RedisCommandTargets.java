@@ -0,0 +1,53 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.function.Function;
+
+/**
+ * Resolves the {@code Redis*Commands} receiver of a command on a {@link RedisConnection}, preferring the
+ * {@code xxxCommands()} views over the deprecated defaults of the connection itself.
+ */
+final class RedisCommandTargets {
+
+    private static final Function<RedisConnection, Object>[] TARGETS = newTargets();
+
+    private RedisCommandTargets() {
+    }
+
+    static Object getTarget(int commandId, RedisConnection connection) {
+        var target = TARGETS[commandId];
+        if (target == null) {
+            var entry = RedisCommandsMethodHandles.getCommandEntry(commandId);
+            if (entry == null) {
+                throw new IllegalArgumentException("unknown command id " + commandId);
+            }
+            target = target(entry.declaringClass());
+            TARGETS[commandId] = target;
+        }
+        return target.apply(connection);
+    }
+
+    private static Function<RedisConnection, Object> target(String declaringClass) {
+        return switch (declaringClass.substring(declaringClass.lastIndexOf('.') + 1)) {
+            case "RedisKeyCommands" -> RedisConnection::keyCommands;
+            case "RedisStringCommands" -> RedisConnection::stringCommands;
+            case "RedisListCommands" -> RedisConnection::listCommands;
+            case "RedisSetCommands" -> RedisConnection::setCommands;
+            case "RedisZSetCommands" -> RedisConnection::zSetCommands;
+            case "RedisHashCommands" -> RedisConnection::hashCommands;
+            case "RedisGeoCommands" -> RedisConnection::geoCommands;
+            case "RedisHyperLogLogCommands" -> RedisConnection::hyperLogLogCommands;
+            case "RedisStreamCommands" -> RedisConnection::streamCommands;
+            case "RedisScriptingCommands" -> RedisConnection::scriptingCommands;
+            case "RedisServerCommands" -> RedisConnection::serverCommands;
+            // RedisTxCommands, RedisPubSubCommands and RedisConnectionCommands are implemented by the connection
+            default -> connection -> connection;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<RedisConnection, Object>[] newTargets() {
+        return new Function[RedisCommandsMethodHandles.getCommandIdLimit()];
+    }
+}
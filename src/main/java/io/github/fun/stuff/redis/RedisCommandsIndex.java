@@ -0,0 +1,76 @@
+package io.github.fun.stuff.redis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the precomputed Redis commands index.
+ * <p>
+ * One tab separated line per command: command id, declaring interface, method name, {@code MethodType} descriptor,
+ * comma separated parameter names and the Jandex method signature. Lines starting with {@code #} are comments.
+ */
+final class RedisCommandsIndex {
+
+    static final String INDEX_RESOURCE = "META-INF/redis-commands.idx";
+
+    private static final char SEPARATOR = '\t';
+
+    private RedisCommandsIndex() {
+    }
+
+    static List<RedisCommandEntry> load(ClassLoader classLoader) {
+        var resource = classLoader.getResourceAsStream(INDEX_RESOURCE);
+        if (resource == null) {
+            // not built by maven (e.g. run from the IDE), fall back to the Jandex scan
+            return RedisCommandsIndexGenerator.scan(classLoader, RedisCommandIds.load(classLoader));
+        }
+        try (var reader = new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8))) {
+            return read(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<RedisCommandEntry> read(BufferedReader reader) throws IOException {
+        List<RedisCommandEntry> entries = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            var columns = line.split(String.valueOf(SEPARATOR), 6);
+            if (columns.length != 6) {
+                throw new IllegalStateException("malformed line in " + INDEX_RESOURCE + ": " + line);
+            }
+            entries.add(new RedisCommandEntry(Integer.parseInt(columns[0]), columns[1], columns[2], columns[3],
+                    columns[4], columns[5]));
+        }
+        return entries;
+    }
+
+    static void write(List<RedisCommandEntry> entries, Writer writer) throws IOException {
+        writer.write("# id\tinterface\tname\tdescriptor\tparameter names\tsignature\n");
+        for (RedisCommandEntry entry : entries) {
+            writer.append(String.valueOf(entry.id())).append(SEPARATOR)
+                    .append(entry.declaringClass()).append(SEPARATOR)
+                    .append(entry.methodName()).append(SEPARATOR)
+                    .append(entry.descriptor()).append(SEPARATOR)
+                    .append(entry.parameterNames()).append(SEPARATOR)
+                    .append(entry.methodSignature()).append('\n');
+        }
+    }
+
+    static Class<?> loadClass(ClassLoader classLoader, String className) {
+        try {
+            return classLoader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.fun.stuff.redis;
+
+import org.jboss.jandex.ArrayType;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.MethodParameterInfo;
+import org.jboss.jandex.ParameterizedType;
+import org.jboss.jandex.PrimitiveType;
+import org.jboss.jandex.Type;
+import org.jboss.jandex.VoidType;
+import org.springframework.data.redis.connection.RedisCommands;
+import org.springframework.data.redis.connection.RedisConnectionCommands;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisHyperLogLogCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.connection.RedisPubSubCommands;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.data.redis.connection.RedisSetCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisTxCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build time generator of the Redis commands index, bound to the {@code process-classes} phase in {@code pom.xml}.
+ * <p>
+ * Scans the {@code Redis*Commands} interfaces with Jandex and writes one {@link RedisCommandEntry} per public method,
+ * so that {@link RedisCommandsMethodHandles} does not have to build a Jandex index at runtime. Command ids are taken
+ * from the checked-in {@link RedisCommandIds} registry. The generator never modifies it: when new signatures show up,
+ * after a Spring Data Redis upgrade for instance, it writes the registry with the new ids appended to the updated
+ * registry file and fails the build.
+ */
+public class RedisCommandsIndexGenerator {
+
+    private static final EnumMap<PrimitiveType.Primitive, Class<?>> PRIMITIVE_TYPE_CLASS_TABLE;
+    private static final Map<String, Class<?>> ARRAY_TYPE_CLASS_TABLE = new HashMap<>();
+
+    static {
+        PRIMITIVE_TYPE_CLASS_TABLE = new EnumMap<>(Map.of(
+                PrimitiveType.Primitive.BOOLEAN, boolean.class,
+                PrimitiveType.Primitive.BYTE, byte.class,
+                PrimitiveType.Primitive.SHORT, short.class,
+                PrimitiveType.Primitive.INT, int.class,
+                PrimitiveType.Primitive.LONG, long.class,
+                PrimitiveType.Primitive.FLOAT, float.class,
+                PrimitiveType.Primitive.DOUBLE, double.class,
+                PrimitiveType.Primitive.CHAR, char.class
+        ));
+
+        ARRAY_TYPE_CLASS_TABLE.put("byte[]", byte[].class);
+        ARRAY_TYPE_CLASS_TABLE.put("byte[][]", byte[][].class);
+        ARRAY_TYPE_CLASS_TABLE.put("int[]", int[].class);
+        ARRAY_TYPE_CLASS_TABLE.put("String[]", String[].class);
+        ARRAY_TYPE_CLASS_TABLE.put("RecordId[]", RecordId[].class);
+        ARRAY_TYPE_CLASS_TABLE.put("StreamOffset[]", StreamOffset[].class);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException(
+                    "usage: RedisCommandsIndexGenerator <output file> <command id registry> <updated registry file>");
+        }
+        var output = Path.of(args[0]);
+        var registryFile = Path.of(args[1]);
+        var updatedRegistryFile = Path.of(args[2]);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+
+        Map<String, Integer> registry;
+        try (var reader = Files.newBufferedReader(registryFile, StandardCharsets.UTF_8)) {
+            registry = RedisCommandIds.read(reader);
+        }
+        int registered = registry.size();
+
+        var entries = scan(RedisCommandsIndexGenerator.class.getClassLoader(), registry);
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            RedisCommandsIndex.write(entries, writer);
+        }
+
+        if (registry.size() != registered) {
+            Files.createDirectories(updatedRegistryFile.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(updatedRegistryFile, StandardCharsets.UTF_8)) {
+                RedisCommandIds.write(registry, writer);
+            }
+            throw new IllegalStateException((registry.size() - registered) + " command signatures are not in "
+                    + registryFile + ", review " + updatedRegistryFile + " and copy it over the registry");
+        }
+    }
+
+    /**
+     * Scans the command interfaces, registering the new signatures into {@code registry}.
+     */
+    static List<RedisCommandEntry> scan(ClassLoader classLoader, Map<String, Integer> registry) {
+        var methods = getAllRedisCommandMethods();
+        RedisCommandIds.assign(registry, methods.stream().map(MethodInfo::toString).toList());
+        return methods.stream()
+                .map(methodInfo -> toEntry(methodInfo, registry.get(methodInfo.toString()), classLoader))
+                .sorted(Comparator.comparingInt(RedisCommandEntry::id))
+                .toList();
+    }
+
+    private static List<MethodInfo> getAllRedisCommandMethods() {
+        try {
+            var index = Index.of(RedisCommands.class, RedisKeyCommands.class,
+                    RedisStringCommands.class, RedisListCommands.class, RedisSetCommands.class,
+                    RedisZSetCommands.class, RedisHashCommands.class, RedisTxCommands.class, RedisPubSubCommands.class,
+                    RedisConnectionCommands.class, RedisServerCommands.class, RedisStreamCommands.class,
+                    RedisScriptingCommands.class, RedisGeoCommands.class, RedisHyperLogLogCommands.class
+            );
+
+            return index.getClassByName(RedisCommands.class)
+                    .interfaceNames()
+                    .stream()
+                    .map(index::getClassByName)
+                    .flatMap(classInfo -> classInfo.methods().stream())
+                    .filter(methodInfo -> Modifier.isPublic(methodInfo.flags()))
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static RedisCommandEntry toEntry(MethodInfo methodInfo, int id, ClassLoader classLoader) {
+        var returnKlass = getClass(methodInfo.returnType(), classLoader);
+
+        var array = methodInfo.parameters().toArray(MethodParameterInfo[]::new);
+        Class<?>[] parameterKlass = new Class<?>[array.length];
+        String[] parameterNames = new String[array.length];
+        for (int i = 0; i < array.length; i++) {
+            parameterKlass[i] = getClass(array[i].type(), classLoader);
+            parameterNames[i] = array[i].name() == null ? "arg" + i : array[i].name();
+        }
+
+        MethodType methodType = MethodType.methodType(returnKlass, parameterKlass);
+        return new RedisCommandEntry(id, methodInfo.declaringClass().name().toString(), methodInfo.name(),
+                methodType.toMethodDescriptorString(), String.join(",", parameterNames), methodInfo.toString());
+    }
+
+    private static Class<?> getClass(Type type, ClassLoader classLoader) {
+        if (type instanceof VoidType) {
+            return void.class;
+        }
+
+        if (type instanceof PrimitiveType primitiveType) {
+            return PRIMITIVE_TYPE_CLASS_TABLE.get(primitiveType.primitive());
+        }
+
+        if (type instanceof ArrayType arrayType) {
+            Class<?> klass = ARRAY_TYPE_CLASS_TABLE.get(arrayType.elementType().name().local() + "[]".repeat(arrayType.dimensions()));
+            if (klass != null) {
+                return klass;
+            }
+            throw new RuntimeException("need to add Class");
+        }
+
+        return RedisCommandsIndex.loadClass(classLoader, getClassName(type));
+    }
+
+    private static String getClassName(Type type) {
+        if (type instanceof ParameterizedType) {
+            return type.asParameterizedType().name().toString();
+        } else {
+            return type.name().toString();
+        }
+    }
+}
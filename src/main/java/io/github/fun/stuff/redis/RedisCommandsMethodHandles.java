@@ -1,158 +1,222 @@
 package io.github.fun.stuff.redis;
 
-import org.jboss.jandex.ArrayType;
-import org.jboss.jandex.Index;
-import org.jboss.jandex.MethodInfo;
-import org.jboss.jandex.MethodParameterInfo;
-import org.jboss.jandex.ParameterizedType;
-import org.jboss.jandex.PrimitiveType;
-import org.jboss.jandex.Type;
-import org.jboss.jandex.VoidType;
-import org.springframework.data.redis.connection.RedisCommands;
-import org.springframework.data.redis.connection.RedisConnectionCommands;
-import org.springframework.data.redis.connection.RedisGeoCommands;
-import org.springframework.data.redis.connection.RedisHashCommands;
-import org.springframework.data.redis.connection.RedisHyperLogLogCommands;
-import org.springframework.data.redis.connection.RedisKeyCommands;
-import org.springframework.data.redis.connection.RedisListCommands;
-import org.springframework.data.redis.connection.RedisPubSubCommands;
-import org.springframework.data.redis.connection.RedisScriptingCommands;
-import org.springframework.data.redis.connection.RedisServerCommands;
-import org.springframework.data.redis.connection.RedisSetCommands;
-import org.springframework.data.redis.connection.RedisStreamCommands;
-import org.springframework.data.redis.connection.RedisStringCommands;
-import org.springframework.data.redis.connection.RedisTxCommands;
-import org.springframework.data.redis.connection.RedisZSetCommands;
-import org.springframework.data.redis.connection.stream.RecordId;
-import org.springframework.data.redis.connection.stream.StreamOffset;
-
-import java.io.IOException;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
-import java.lang.reflect.Modifier;
-import java.util.EnumMap;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * Registry of the {@code Redis*Commands} method handles by command id, loaded from the generated index.
+ * <p>
+ * Handles are resolved lazily, a command group ({@code RedisStringCommands}, {@code RedisHashCommands}, ...) on the
+ * first use of one of its commands, and invokers per command. {@link #warmUp(Collection)} does both ahead of the first
+ * replay, {@link RedisCommandsProfile} persists the commands of a run to warm them up in the next one.
+ */
 public class RedisCommandsMethodHandles {
 
+    public static final int UNKNOWN_COMMAND_ID = -1;
+
     private static final MethodHandles.Lookup PUBLIC_LOOKUP = MethodHandles.publicLookup();
-    private static final EnumMap<PrimitiveType.Primitive, Class<?>> PRIMITIVE_TYPE_CLASS_TABLE;
-    private static final Map<String, Class<?>> ARRAY_TYPE_CLASS_TABLE = new HashMap<>();
-    static final Map<String, MethodHandle> METHOD_HANDLE_MAP;
+    private static final ClassLoader CLASS_LOADER = RedisCommandsMethodHandles.class.getClassLoader();
+    static final Map<String, Integer> COMMAND_ID_MAP;
+    private static final RedisCommandEntry[] COMMAND_ENTRIES;
+    private static final Map<String, Integer> COMMAND_ID_BY_NAME_AND_DESCRIPTOR;
+    private static final Map<Method, Integer> COMMAND_ID_BY_METHOD = new ConcurrentHashMap<>();
+    private static final MethodType[] METHOD_TYPES;
+    private static final MethodHandle[] METHOD_HANDLES;
+    private static final MethodHandle[] SPREAD_METHOD_HANDLES;
+    private static final RedisCommandInvoker[] INVOKERS;
+    private static final Map<String, List<RedisCommandEntry>> INTERFACE_ENTRIES_MAP;
+    private static final Map<String, Boolean> RESOLVED_INTERFACES = new ConcurrentHashMap<>();
 
     static {
-        PRIMITIVE_TYPE_CLASS_TABLE = new EnumMap<>(Map.of(
-                PrimitiveType.Primitive.BOOLEAN, boolean.class,
-                PrimitiveType.Primitive.BYTE, byte.class,
-                PrimitiveType.Primitive.SHORT, short.class,
-                PrimitiveType.Primitive.INT, int.class,
-                PrimitiveType.Primitive.LONG, long.class,
-                PrimitiveType.Primitive.FLOAT, float.class,
-                PrimitiveType.Primitive.DOUBLE, double.class,
-                PrimitiveType.Primitive.CHAR, char.class
-        ));
-
-        ARRAY_TYPE_CLASS_TABLE.put("byte[]", byte[].class);
-        ARRAY_TYPE_CLASS_TABLE.put("byte[][]", byte[][].class);
-        ARRAY_TYPE_CLASS_TABLE.put("int[]", int[].class);
-        ARRAY_TYPE_CLASS_TABLE.put("String[]", String[].class);
-        ARRAY_TYPE_CLASS_TABLE.put("RecordId[]", RecordId[].class);
-        ARRAY_TYPE_CLASS_TABLE.put("StreamOffset[]", StreamOffset[].class);
-
-        METHOD_HANDLE_MAP = initRedisCommandMethodHandle(getAllRedisCommandMethods(),
-                RedisCommandsMethodHandles.class.getClassLoader());
+        var entries = RedisCommandsIndex.load(CLASS_LOADER);
+
+        int maxId = entries.stream().mapToInt(RedisCommandEntry::id).max().orElse(-1);
+        COMMAND_ENTRIES = new RedisCommandEntry[maxId + 1];
+        METHOD_TYPES = new MethodType[maxId + 1];
+        METHOD_HANDLES = new MethodHandle[maxId + 1];
+        SPREAD_METHOD_HANDLES = new MethodHandle[maxId + 1];
+        INVOKERS = new RedisCommandInvoker[maxId + 1];
+        Map<String, Integer> commandIdMap = new LinkedHashMap<>();
+        Map<String, Integer> commandIdByNameAndDescriptor = new HashMap<>();
+        for (RedisCommandEntry entry : entries) {
+            COMMAND_ENTRIES[entry.id()] = entry;
+            commandIdMap.put(entry.methodSignature(), entry.id());
+            commandIdByNameAndDescriptor.putIfAbsent(entry.methodName() + entry.descriptor(), entry.id());
+        }
+        COMMAND_ID_MAP = Collections.unmodifiableMap(commandIdMap);
+        COMMAND_ID_BY_NAME_AND_DESCRIPTOR = commandIdByNameAndDescriptor;
+        INTERFACE_ENTRIES_MAP = entries.stream()
+                .collect(Collectors.groupingBy(RedisCommandEntry::declaringClass));
+        RedisCommandsProfile.installFromSystemProperty();
     }
 
     public static MethodHandle getMethodHandle(String methodSignature) {
+        return getMethodHandle(getCommandId(methodSignature));
+    }
 
-        return METHOD_HANDLE_MAP.get(methodSignature);
+    /**
+     * @return the handle of the command, or {@code null} if the id is unknown or was retired
+     */
+    public static MethodHandle getMethodHandle(int commandId) {
+        if (commandId < 0 || commandId >= METHOD_HANDLES.length) {
+            return null;
+        }
+        MethodHandle methodHandle = METHOD_HANDLES[commandId];
+        if (methodHandle == null) {
+            var entry = COMMAND_ENTRIES[commandId];
+            if (entry == null) {
+                return null;
+            }
+            RESOLVED_INTERFACES.computeIfAbsent(entry.declaringClass(), RedisCommandsMethodHandles::initRedisCommandMethodHandle);
+            methodHandle = METHOD_HANDLES[commandId];
+        }
+        return methodHandle;
     }
 
-    private static List<MethodInfo> getAllRedisCommandMethods() {
-        try {
-            var index = Index.of(RedisCommands.class, RedisKeyCommands.class,
-                    RedisStringCommands.class, RedisListCommands.class, RedisSetCommands.class,
-                    RedisZSetCommands.class, RedisHashCommands.class, RedisTxCommands.class, RedisPubSubCommands.class,
-                    RedisConnectionCommands.class, RedisServerCommands.class, RedisStreamCommands.class,
-                    RedisScriptingCommands.class, RedisGeoCommands.class, RedisHyperLogLogCommands.class
-            );
-
-            return index.getClassByName(RedisCommands.class)
-                    .interfaceNames()
-                    .stream()
-                    .map(index::getClassByName)
-                    .flatMap(classInfo -> classInfo.methods().stream())
-                    .filter(methodInfo -> Modifier.isPublic(methodInfo.flags()))
-                    .toList();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * @return the command handle adapted to {@code (Object target, Object[] args)Object}, to be called with
+     * {@code invokeExact}
+     */
+    public static MethodHandle getSpreadMethodHandle(int commandId) {
+        var methodHandle = getMethodHandle(commandId);
+        if (methodHandle == null) {
+            return null;
         }
+        MethodHandle spreadMethodHandle = SPREAD_METHOD_HANDLES[commandId];
+        if (spreadMethodHandle == null) {
+            spreadMethodHandle = RedisCommandInvokers.spread(methodHandle);
+            SPREAD_METHOD_HANDLES[commandId] = spreadMethodHandle;
+        }
+        return spreadMethodHandle;
     }
 
-    private static Map<String, MethodHandle> initRedisCommandMethodHandle(List<MethodInfo> methods, ClassLoader contextClassLoader) {
-        return methods.stream().map(methodInfo -> {
-            Class<?> klass = loadClass(contextClassLoader, methodInfo.declaringClass().name().toString());
-            String methodName = methodInfo.name();
-            var returnKlass = getClass(methodInfo.returnType(), contextClassLoader);
+    /**
+     * @return a generated invoker of the command, the preferred way to replay a command
+     */
+    public static RedisCommandInvoker getInvoker(int commandId) {
+        var methodHandle = getMethodHandle(commandId);
+        if (methodHandle == null) {
+            return null;
+        }
+        RedisCommandInvoker invoker = INVOKERS[commandId];
+        if (invoker == null) {
+            invoker = RedisCommandInvokers.generate(methodHandle);
+            INVOKERS[commandId] = invoker;
+        }
+        return invoker;
+    }
 
-            var array = methodInfo.parameters().toArray(MethodParameterInfo[]::new);
-            Class<?>[] parameterKlass = new Class<?>[array.length];
-            for (int i = 0; i < array.length; i++) {
-                parameterKlass[i] = getClass(array[i].type(), contextClassLoader);
+    /**
+     * Resolves the handles and generates the invokers of the commands ahead of their first replay, unknown signatures
+     * are skipped.
+     *
+     * @return the number of commands warmed up
+     */
+    public static int warmUp(Collection<String> methodSignatures) {
+        int warmedUp = 0;
+        for (String methodSignature : methodSignatures) {
+            if (getInvoker(getCommandId(methodSignature)) != null) {
+                warmedUp++;
             }
+        }
+        return warmedUp;
+    }
 
-            MethodType methodType = MethodType.methodType(returnKlass, parameterKlass);
-            try {
-                return new MethodRecord(methodInfo.toString(), RedisCommandsMethodHandles.PUBLIC_LOOKUP.findVirtual(klass, methodName, methodType));
-            } catch (NoSuchMethodException | IllegalAccessException e) {
-                throw new RuntimeException(e);
+    /**
+     * @return the signatures of the commands whose invoker was generated, by a replay or a warm-up
+     */
+    public static Set<String> getInvokedMethodSignatures() {
+        Set<String> methodSignatures = new LinkedHashSet<>();
+        for (int commandId = 0; commandId < INVOKERS.length; commandId++) {
+            if (INVOKERS[commandId] != null) {
+                methodSignatures.add(COMMAND_ENTRIES[commandId].methodSignature());
             }
+        }
+        return methodSignatures;
+    }
 
-        }).collect(Collectors.toMap(MethodRecord::methodSignature, MethodRecord::methodHandle));
+    public static int getCommandId(String methodSignature) {
+        return COMMAND_ID_MAP.getOrDefault(methodSignature, UNKNOWN_COMMAND_ID);
     }
 
-    private static Class<?> getClass(Type type, ClassLoader contextClassLoader) {
-        if (type instanceof VoidType) {
-            return void.class;
+    /**
+     * Maps an intercepted {@link Method} to its command id by name and parameter types, so that the deprecated
+     * {@code RedisConnection} defaults resolve to the same id as the {@code Redis*Commands} method they delegate to.
+     */
+    public static int getCommandId(Method method) {
+        Integer commandId = COMMAND_ID_BY_METHOD.get(method);
+        if (commandId == null) {
+            var descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+            commandId = COMMAND_ID_BY_NAME_AND_DESCRIPTOR.getOrDefault(method.getName() + descriptor, UNKNOWN_COMMAND_ID);
+            COMMAND_ID_BY_METHOD.put(method, commandId);
         }
+        return commandId;
+    }
 
-        if (type instanceof PrimitiveType primitiveType) {
-            return PRIMITIVE_TYPE_CLASS_TABLE.get(primitiveType.primitive());
+    /**
+     * @return the command type without the {@code Redis*Commands} receiver, resolved without looking up the handle
+     */
+    public static MethodType getMethodType(int commandId) {
+        var entry = getCommandEntry(commandId);
+        if (entry == null) {
+            return null;
         }
-
-        if (type instanceof ArrayType arrayType) {
-            Class<?> klass = ARRAY_TYPE_CLASS_TABLE.get(arrayType.elementType().name().local() + "[]".repeat(arrayType.dimensions()));
-            if (klass != null) {
-                return klass;
-            }
-            throw new RuntimeException("need to add Class");
+        MethodType methodType = METHOD_TYPES[commandId];
+        if (methodType == null) {
+            methodType = MethodType.fromMethodDescriptorString(entry.descriptor(), CLASS_LOADER);
+            METHOD_TYPES[commandId] = methodType;
         }
+        return methodType;
+    }
 
-        return loadClass(contextClassLoader, getClassName(type));
-
+    public static String getMethodSignature(int commandId) {
+        var entry = getCommandEntry(commandId);
+        return entry == null ? null : entry.methodSignature();
     }
 
-    private static String getClassName(Type type) {
-        if (type instanceof ParameterizedType) {
-            return type.asParameterizedType().name().toString();
-        } else {
-            return type.name().toString();
-        }
+    /**
+     * @return the exclusive upper bound of the command ids, for id indexed tables
+     */
+    public static int getCommandIdLimit() {
+        return COMMAND_ENTRIES.length;
     }
 
+    public static Set<String> getMethodSignatures() {
+        return COMMAND_ID_MAP.keySet();
+    }
 
-    private static Class<?> loadClass(ClassLoader classLoader, String className) {
-        try {
-            return classLoader.loadClass(className);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
+    static RedisCommandEntry getCommandEntry(int commandId) {
+        if (commandId < 0 || commandId >= COMMAND_ENTRIES.length) {
+            return null;
         }
+        return COMMAND_ENTRIES[commandId];
     }
 
-    record MethodRecord(String methodSignature, MethodHandle methodHandle) {
+    private static Boolean initRedisCommandMethodHandle(String declaringClass) {
+        Class<?> klass = RedisCommandsIndex.loadClass(CLASS_LOADER, declaringClass);
+        Map<Integer, MethodHandle> methodHandles = new HashMap<>();
+        for (RedisCommandEntry entry : INTERFACE_ENTRIES_MAP.get(declaringClass)) {
+            MethodType methodType = getMethodType(entry.id());
+            try {
+                methodHandles.put(entry.id(), PUBLIC_LOOKUP.findVirtual(klass, entry.methodName(), methodType));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        // publish only once the whole interface resolved, MethodHandle is immutable so a racy read is safe
+        methodHandles.forEach((id, methodHandle) -> METHOD_HANDLES[id] = methodHandle);
+        return Boolean.TRUE;
     }
 }
@@ -0,0 +1,82 @@
+package io.github.fun.stuff.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * The commands a run replayed, one method signature per line, so the next run can
+ * {@link RedisCommandsMethodHandles#warmUp(java.util.Collection) warm them up} before its first replay.
+ * <p>
+ * With {@code -Dredis.commands.profile=<file>} the profile is warmed up on a background thread once
+ * {@link RedisCommandsMethodHandles} is initialized, and saved back at JVM shutdown. The saved profile is every
+ * command with an invoker, the warmed up ones included, so a command stays in the profile once replayed.
+ */
+public final class RedisCommandsProfile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisCommandsProfile.class);
+
+    public static final String PROFILE_PROPERTY = "redis.commands.profile";
+
+    private RedisCommandsProfile() {
+    }
+
+    /**
+     * @return the number of commands warmed up, 0 when the profile does not exist
+     */
+    public static int warmUp(Path profile) throws IOException {
+        if (!Files.exists(profile)) {
+            return 0;
+        }
+        List<String> methodSignatures = Files.readAllLines(profile, StandardCharsets.UTF_8).stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .toList();
+        return RedisCommandsMethodHandles.warmUp(methodSignatures);
+    }
+
+    /**
+     * Writes {@link RedisCommandsMethodHandles#getInvokedMethodSignatures()}, replacing the profile atomically.
+     */
+    public static void save(Path profile) throws IOException {
+        var parent = profile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        var temp = Files.createTempFile(parent, profile.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, RedisCommandsMethodHandles.getInvokedMethodSignatures().stream().sorted().toList(),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, profile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static void installFromSystemProperty() {
+        var property = System.getProperty(PROFILE_PROPERTY);
+        if (property == null || property.isBlank()) {
+            return;
+        }
+        var profile = Path.of(property);
+        // the warm-up waits for the initialization of RedisCommandsMethodHandles, which called this
+        Thread.ofVirtual().name("redis-commands-warm-up").start(() -> {
+            try {
+                LOG.info("warmed up {} commands from {}", warmUp(profile), profile);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("failed to warm up the commands of {}", profile, e);
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("redis-commands-profile").unstarted(() -> {
+            try {
+                save(profile);
+            } catch (IOException e) {
+                LOG.warn("failed to save the commands profile {}", profile, e);
+            }
+        }));
+    }
+}
@@ -0,0 +1,439 @@
+package io.github.fun.stuff.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of encoded {@link RedisCommandRecord}s, in memory-mapped segment files named after the offset of
+ * their first byte ({@code 00000000000000000000.log}).
+ * <p>
+ * A record is {@code [int length][int crc32c][payload]}, the payload being the {@link RedisCommandCodec} encoding of
+ * the command. Appends are a copy into the mapped segment, made durable according to the {@link FsyncPolicy}. Offsets
+ * are logical byte positions in the whole log, a {@link Cursor} reads from one and can persist it under its name.
+ * <p>
+ * On open, the last segment is scanned and the first record with a bad length or checksum, a write torn by a crash,
+ * ends the log: it and everything after it are zeroed.
+ * <p>
+ * Retention never deletes a segment past the oldest committed offset of the cursors opened on this instance, so a
+ * lagging or failed reader holds the log on disk until it catches up. Cursors not opened since the log was opened are
+ * not known and do not hold it.
+ */
+public class ReplicationLog implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationLog.class);
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_SUFFIX = ".cursor";
+    private static final int ZERO_CHUNK = 64 * 1024;
+
+    public enum FsyncPolicy {
+        /**
+         * Every append is forced to disk before it returns.
+         */
+        EVERY_APPEND,
+        /**
+         * Appends are forced together every {@link Options#groupCommitInterval()}, a crash loses at most one interval.
+         */
+        GROUP_COMMIT,
+        /**
+         * Left to the OS page cache, survives a process crash but not a machine crash.
+         */
+        NEVER
+    }
+
+    /**
+     * @param retention      sealed segments older than this are deleted, unless a cursor has not committed past them
+     * @param retentionBytes sealed segments are deleted, oldest first, while the log is larger than this, unless a
+     *                       cursor has not committed past them
+     */
+    public record Options(int segmentSize, FsyncPolicy fsyncPolicy, Duration groupCommitInterval, Duration retention,
+                          long retentionBytes) {
+
+        public Options {
+            if (segmentSize <= HEADER_SIZE) {
+                throw new IllegalArgumentException("segmentSize must be larger than " + HEADER_SIZE);
+            }
+            if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT && !groupCommitInterval.isPositive()) {
+                throw new IllegalArgumentException("groupCommitInterval must be positive");
+            }
+        }
+
+        public static Options defaults() {
+            return new Options(64 * 1024 * 1024, FsyncPolicy.GROUP_COMMIT, Duration.ofMillis(10), Duration.ofDays(1),
+                    Long.MAX_VALUE);
+        }
+    }
+
+    private final Path directory;
+    private final Options options;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Long> committedOffsets = new ConcurrentHashMap<>();
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledExecutorService fsyncExecutor;
+    private volatile Segment active;
+    private volatile long endOffset;
+    private volatile boolean dirty;
+    private ByteBuffer writeBuffer;
+
+    private ReplicationLog(Path directory, Options options) {
+        this.directory = directory;
+        this.options = options;
+        if (options.fsyncPolicy() == FsyncPolicy.GROUP_COMMIT) {
+            long intervalNanos = options.groupCommitInterval().toNanos();
+            this.fsyncExecutor = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().daemon().name("replication-log-fsync").factory());
+            this.fsyncExecutor.scheduleWithFixedDelay(this::groupCommit, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        } else {
+            this.fsyncExecutor = null;
+        }
+    }
+
+    public static ReplicationLog open(Path directory, Options options) throws IOException {
+        Files.createDirectories(directory);
+        var log = new ReplicationLog(directory, options);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        try {
+            log.recover(files);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    /**
+     * @return the offset of the appended record
+     */
+    public synchronized long append(RedisCommandRecord record) {
+        int maxLength = RedisCommandCodec.encodedSize(record.commandId(), record.args());
+        int position = reserve(maxLength);
+        writeBuffer.position(position + HEADER_SIZE);
+        RedisCommandCodec.encode(record.commandId(), record.args(), writeBuffer);
+        return commit(position, writeBuffer.position() - position - HEADER_SIZE);
+    }
+
+    /**
+     * Appends an already encoded record, the {@code payload} position is left unchanged.
+     *
+     * @return the offset of the appended record
+     */
+    public synchronized long append(ByteBuffer payload) {
+        int length = payload.remaining();
+        int position = reserve(length);
+        writeBuffer.put(position + HEADER_SIZE, payload, payload.position(), length);
+        return commit(position, length);
+    }
+
+    /**
+     * Forces every append made so far to disk, whatever the {@link FsyncPolicy}.
+     */
+    public void sync() {
+        dirty = false;
+        active.buffer.force();
+    }
+
+    /**
+     * @return the offset of the oldest retained record
+     */
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * @return the offset the next record will be appended at
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Opens a reader at the offset last {@link Cursor#commit() committed} under {@code name}, or at the start of the
+     * log.
+     */
+    public Cursor openCursor(String name) throws IOException {
+        var file = directory.resolve(name + CURSOR_SUFFIX);
+        long offset = Files.exists(file)
+                ? Long.parseLong(Files.readString(file, StandardCharsets.US_ASCII).trim())
+                : getStartOffset();
+        // a cursor committed past a torn tail restarts at the recovered end
+        offset = Math.min(offset, endOffset);
+        committedOffsets.merge(name, offset, Math::min);
+        return new Cursor(name, file, offset);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (fsyncExecutor != null) {
+            fsyncExecutor.shutdownNow();
+        }
+        if (active != null && options.fsyncPolicy() != FsyncPolicy.NEVER) {
+            sync();
+        }
+    }
+
+    private int reserve(int length) {
+        if ((long) HEADER_SIZE + length > options.segmentSize()) {
+            throw new IllegalArgumentException("record of " + length + " bytes does not fit a segment of "
+                    + options.segmentSize() + " bytes");
+        }
+        int position = (int) (endOffset - active.baseOffset);
+        if (position + HEADER_SIZE + length > active.buffer.capacity()) {
+            roll();
+            position = 0;
+        }
+        return position;
+    }
+
+    private long commit(int position, int length) {
+        crc.reset();
+        crc.update(writeBuffer.slice(position + HEADER_SIZE, length));
+        writeBuffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+        // the length goes last, a header torn before it reads as the end of the log
+        writeBuffer.putInt(position, length);
+        long offset = active.baseOffset + position;
+        endOffset = offset + HEADER_SIZE + length;
+        if (options.fsyncPolicy() == FsyncPolicy.EVERY_APPEND) {
+            active.buffer.force(position, HEADER_SIZE + length);
+        } else {
+            dirty = true;
+        }
+        return offset;
+    }
+
+    private void roll() {
+        var sealed = active;
+        if (options.fsyncPolicy() != FsyncPolicy.NEVER) {
+            sealed.buffer.force();
+        }
+        sealed.sealedAtMillis = System.currentTimeMillis();
+        try {
+            activate(Segment.create(segmentFile(endOffset), endOffset, options.segmentSize()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        applyRetention();
+    }
+
+    private void activate(Segment segment) {
+        segments.put(segment.baseOffset, segment);
+        active = segment;
+        writeBuffer = segment.buffer.duplicate();
+    }
+
+    private void applyRetention() {
+        long expiredBefore = System.currentTimeMillis() - options.retention().toMillis();
+        long size = (long) segments.size() * options.segmentSize();
+        long committedOffset = committedOffsets.values().stream().mapToLong(Long::longValue).min().orElse(Long.MAX_VALUE);
+        for (Segment segment : segments.values()) {
+            if (segment == active || (size <= options.retentionBytes() && segment.sealedAtMillis >= expiredBefore)) {
+                break;
+            }
+            Long nextBaseOffset = segments.higherKey(segment.baseOffset);
+            if (nextBaseOffset == null || nextBaseOffset > committedOffset) {
+                // a cursor still has records to read in it
+                break;
+            }
+            segments.remove(segment.baseOffset);
+            size -= options.segmentSize();
+            try {
+                // the mapping stays valid for readers still holding the segment until it is collected
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                LOG.warn("failed to delete segment {}", segment.file, e);
+            }
+        }
+    }
+
+    private void groupCommit() {
+        if (dirty) {
+            dirty = false;
+            active.buffer.force();
+        }
+    }
+
+    private void recover(List<Path> files) throws IOException {
+        if (files.isEmpty()) {
+            activate(Segment.create(segmentFile(0), 0, options.segmentSize()));
+            return;
+        }
+        for (Path file : files) {
+            var name = file.getFileName().toString();
+            long baseOffset = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            var segment = Segment.open(file, baseOffset, options.segmentSize());
+            segment.sealedAtMillis = Files.getLastModifiedTime(file).toMillis();
+            activate(segment);
+        }
+        int end = validEnd(active.buffer);
+        for (int position = end; position < active.buffer.capacity(); position += ZERO_CHUNK) {
+            int length = Math.min(ZERO_CHUNK, active.buffer.capacity() - position);
+            writeBuffer.put(position, new byte[length]);
+        }
+        if (end < active.buffer.capacity()) {
+            active.buffer.force();
+        }
+        endOffset = active.baseOffset + end;
+        LOG.info("recovered {} segments of {}, end offset {}", segments.size(), directory, endOffset);
+    }
+
+    private int validEnd(ByteBuffer buffer) {
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - HEADER_SIZE) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                LOG.warn("torn record at offset {}, truncating the log", active.baseOffset + position);
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private Path segmentFile(long baseOffset) {
+        return directory.resolve(String.format("%020d", baseOffset) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Sequential reader of the log, owned by one thread.
+     */
+    public final class Cursor {
+
+        private final String name;
+        private final Path file;
+        private final CRC32C crc = new CRC32C();
+        private long offset;
+
+        private Cursor(String name, Path file, long offset) {
+            this.name = name;
+            this.file = file;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the offset of the next record to read
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the bytes between this cursor and the end of the log
+         */
+        public long getLag() {
+            return endOffset - offset;
+        }
+
+        public void seek(long offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * @return a read-only view of the next payload, in the mapped segment, or {@code null} at the end of the log
+         */
+        public ByteBuffer nextPayload() {
+            if (offset >= endOffset) {
+                return null;
+            }
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null || offset < segments.firstKey()) {
+                throw new IllegalStateException("offset " + offset + " of cursor " + name + " is no longer retained");
+            }
+            var buffer = entry.getValue().buffer;
+            int position = (int) (offset - entry.getKey());
+            int length = buffer.getInt(position);
+            var payload = buffer.slice(position + HEADER_SIZE, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                throw new IllegalStateException("corrupted record at offset " + offset);
+            }
+            offset += HEADER_SIZE + length;
+            return payload.asReadOnlyBuffer();
+        }
+
+        /**
+         * @return the next record, or {@code null} at the end of the log
+         */
+        public RedisCommandRecord next() {
+            var payload = nextPayload();
+            return payload == null ? null : RedisCommandCodec.decode(payload);
+        }
+
+        /**
+         * Persists the offset, {@link ReplicationLog#openCursor(String)} resumes from it.
+         */
+        public void commit() throws IOException {
+            var temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, Long.toString(offset), StandardCharsets.US_ASCII);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committedOffsets.put(name, offset);
+        }
+    }
+
+    private static final class Segment {
+
+        final Path file;
+        final long baseOffset;
+        final MappedByteBuffer buffer;
+        volatile long sealedAtMillis = Long.MAX_VALUE;
+
+        private Segment(Path file, long baseOffset, MappedByteBuffer buffer) {
+            this.file = file;
+            this.baseOffset = baseOffset;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path file, long baseOffset, int size) throws IOException {
+            try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                return new Segment(file, baseOffset, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        static Segment open(Path file, long baseOffset, int size) throws IOException {
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long fileSize = Math.max(size, channel.size());
+                if (fileSize > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("segment " + file + " is too large");
+                }
+                return new Segment(file, baseOffset, channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize));
+            }
+        }
+    }
+}
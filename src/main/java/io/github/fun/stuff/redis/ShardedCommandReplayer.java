@@ -0,0 +1,87 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.util.function.Consumer;
+
+/**
+ * Replays {@link RedisCommandRecord}s over N ordered lanes, each a {@link PipelinedCommandReplayer} with its own
+ * connection from the {@link RedisConnectionFactory}.
+ * <p>
+ * A command goes to the lane of the cluster slot of its keys, so every key, and every {@code {hash tag}}, keeps a
+ * single replay order. Commands without a key, or with keys in different slots ({@code FLUSHDB}, {@code EVAL},
+ * {@code RENAME a b}, ...) are barriers: all lanes are drained, then the command is replayed alone. A
+ * {@link RedisCommandSpec#connection() connection} command ({@code SELECT}, {@code MULTI}, ...) changes the state of
+ * the connection it runs on, so it is a barrier replayed on every lane.
+ * <p>
+ * Submissions must come from one thread, the order of the submissions is the replay order. With
+ * {@link PipelinedCommandReplayer.Options#virtualThreads()} each lane runs on its own virtual thread, so a high lane
+ * count does not need a platform thread per lane.
+ */
+public class ShardedCommandReplayer implements AutoCloseable {
+
+    private final PipelinedCommandReplayer[] lanes;
+
+    public ShardedCommandReplayer(RedisConnectionFactory connectionFactory, int laneCount,
+                                  PipelinedCommandReplayer.Options options,
+                                  Consumer<PipelinedCommandReplayer.BatchResult> listener) {
+        this(connectionFactory, laneCount, options, listener, CommandMetrics.NONE);
+    }
+
+    public ShardedCommandReplayer(RedisConnectionFactory connectionFactory, int laneCount,
+                                  PipelinedCommandReplayer.Options options,
+                                  Consumer<PipelinedCommandReplayer.BatchResult> listener, CommandMetrics metrics) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be positive");
+        }
+        this.lanes = new PipelinedCommandReplayer[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new PipelinedCommandReplayer(connectionFactory, options, listener, metrics);
+        }
+    }
+
+    public void submit(RedisCommandRecord command) throws InterruptedException {
+        int slot = RedisCommandKeys.getSlot(command);
+        if (RedisCommandSpecs.getSpec(command.commandId()).connection()) {
+            broadcast(command);
+        } else if (slot == RedisCommandKeys.NO_SLOT) {
+            barrier(command);
+        } else {
+            lanes[slot % lanes.length].submit(command);
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Blocks until every command submitted before this call has been replayed on all lanes.
+     */
+    public void flush() throws InterruptedException {
+        for (PipelinedCommandReplayer lane : lanes) {
+            lane.flush();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (PipelinedCommandReplayer lane : lanes) {
+            lane.close();
+        }
+    }
+
+    private void barrier(RedisCommandRecord command) throws InterruptedException {
+        flush();
+        lanes[0].submit(command);
+        lanes[0].flush();
+    }
+
+    private void broadcast(RedisCommandRecord command) throws InterruptedException {
+        flush();
+        for (PipelinedCommandReplayer lane : lanes) {
+            lane.submit(command);
+        }
+        flush();
+    }
+}
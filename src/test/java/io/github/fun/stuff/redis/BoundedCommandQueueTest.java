@@ -0,0 +1,118 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.fun.stuff.redis.BoundedCommandQueue.OverflowStrategy.BLOCK;
+import static io.github.fun.stuff.redis.BoundedCommandQueue.OverflowStrategy.DROP_OLDEST;
+import static io.github.fun.stuff.redis.BoundedCommandQueue.OverflowStrategy.SPILL;
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class BoundedCommandQueueTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void testBlock() throws Exception {
+        try (var queue = new BoundedCommandQueue(1, BLOCK, null)) {
+            queue.put(set(0));
+            var second = set(1);
+            var blocked = CompletableFuture.runAsync(() -> {
+                try {
+                    queue.put(second);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            Thread.sleep(100);
+            Assertions.assertFalse(blocked.isDone());
+            Assertions.assertEquals("0", value(queue.poll(1, TimeUnit.SECONDS)));
+            blocked.get(1, TimeUnit.SECONDS);
+            Assertions.assertEquals("1", value(queue.poll(1, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    void testDropOldest() throws Exception {
+        try (var queue = new BoundedCommandQueue(2, DROP_OLDEST, null)) {
+            Assertions.assertNull(queue.put(set(0)));
+            Assertions.assertNull(queue.put(set(1)));
+            Assertions.assertEquals("0", value(queue.put(set(2))));
+
+            Assertions.assertEquals(List.of("1", "2"), drain(queue));
+            Assertions.assertEquals(1, queue.getDroppedCount());
+        }
+    }
+
+    @Test
+    void testSpillKeepsOrder() throws Exception {
+        try (var queue = new BoundedCommandQueue(2, SPILL, spillDirectory)) {
+            for (int i = 0; i < 5; i++) {
+                queue.put(set(i));
+            }
+            Assertions.assertEquals(3, queue.getSpilledCount());
+            Assertions.assertEquals("0", value(queue.poll(0, TimeUnit.SECONDS)));
+            queue.put(set(5));
+
+            Assertions.assertEquals(List.of("1", "2", "3", "4", "5"), drain(queue));
+            Assertions.assertTrue(queue.isEmpty());
+        }
+        try (var files = Files.list(spillDirectory)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testUnspillableRecordWaits() throws Exception {
+        int scan = commandId(RedisKeyCommands.class, "scan", ScanOptions.class);
+        try (var queue = new BoundedCommandQueue(1, SPILL, spillDirectory)) {
+            queue.put(set(0));
+            queue.put(set(1));
+            var blocked = CompletableFuture.runAsync(() -> {
+                try {
+                    queue.put(new RedisCommandRecord(scan, new Object[]{ScanOptions.NONE}));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            Thread.sleep(100);
+            Assertions.assertFalse(blocked.isDone());
+            Assertions.assertEquals("0", value(queue.poll(1, TimeUnit.SECONDS)));
+            Assertions.assertEquals("1", value(queue.poll(1, TimeUnit.SECONDS)));
+            blocked.get(1, TimeUnit.SECONDS);
+            Assertions.assertEquals(scan, queue.poll(1, TimeUnit.SECONDS).commandId());
+            Assertions.assertEquals(1, queue.getUnspillableCount());
+        }
+    }
+
+    private static List<String> drain(BoundedCommandQueue queue) {
+        List<RedisCommandRecord> records = new ArrayList<>();
+        queue.drainTo(records, Integer.MAX_VALUE);
+        return records.stream().map(BoundedCommandQueueTest::value).toList();
+    }
+
+    private static RedisCommandRecord set(int i) throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        return new RedisCommandRecord(commandId, new Object[]{"key".getBytes(StandardCharsets.UTF_8),
+                String.valueOf(i).getBytes(StandardCharsets.UTF_8)});
+    }
+
+    private static String value(RedisCommandRecord record) {
+        return new String((byte[]) record.args()[1], StandardCharsets.UTF_8);
+    }
+}
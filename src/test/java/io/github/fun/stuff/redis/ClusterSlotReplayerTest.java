@@ -0,0 +1,237 @@
+package io.github.fun.stuff.redis;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.ClusterTopology;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionCommands;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class ClusterSlotReplayerTest {
+
+    @Test
+    void testCommandsRouteToTheMasterOfTheirSlot() throws Exception {
+        var first = new InMemoryRedisConnectionFactory();
+        var second = new InMemoryRedisConnectionFactory();
+        var nodes = Map.<RedisNode, RedisConnectionFactory>of(new RedisNode("127.0.0.1", 7000), first,
+                new RedisNode("127.0.0.1", 7001), second);
+        int set = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        List<PipelinedCommandReplayer.BatchResult> failures = new CopyOnWriteArrayList<>();
+
+        try (var replayer = new ClusterSlotReplayer(ClusterSlotReplayerTest::topology, nodes::get, options(),
+                result -> {
+                    if (!result.isSuccess()) {
+                        failures.add(result);
+                    }
+                }, CommandMetrics.NONE)) {
+            for (int i = 0; i < 100; i++) {
+                replayer.submit(new RedisCommandRecord(set, new Object[]{key(i), key(i)}));
+            }
+            replayer.flush();
+
+            Assertions.assertEquals(Set.of("127.0.0.1:7000", "127.0.0.1:7001"), replayer.getNodes());
+        }
+        Assertions.assertTrue(failures.isEmpty());
+        try (var firstConnection = first.getConnection(); var secondConnection = second.getConnection()) {
+            for (int i = 0; i < 100; i++) {
+                boolean firstServes = SlotHash.getSlot(key(i)) < 8192;
+                Assertions.assertEquals(firstServes, firstConnection.keyCommands().exists(key(i)));
+                Assertions.assertEquals(!firstServes, secondConnection.keyCommands().exists(key(i)));
+            }
+        }
+    }
+
+    @Test
+    void testCrossSlotCommandFails() throws Exception {
+        var nodes = Map.<RedisNode, RedisConnectionFactory>of(new RedisNode("127.0.0.1", 7000),
+                new InMemoryRedisConnectionFactory(), new RedisNode("127.0.0.1", 7001),
+                new InMemoryRedisConnectionFactory());
+        int mSet = commandId(RedisStringCommands.class, "mSet", Map.class);
+        List<PipelinedCommandReplayer.BatchResult> results = new CopyOnWriteArrayList<>();
+        byte[] a = "a".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "b".getBytes(StandardCharsets.UTF_8);
+
+        try (var replayer = new ClusterSlotReplayer(ClusterSlotReplayerTest::topology, nodes::get, options(),
+                results::add, CommandMetrics.NONE)) {
+            replayer.submit(new RedisCommandRecord(mSet, new Object[]{Map.of(a, a, b, b)}));
+        }
+        Assertions.assertEquals(1, results.size());
+        Assertions.assertInstanceOf(IllegalArgumentException.class, results.get(0).error());
+    }
+
+    @Test
+    void testKeylessCommands() throws Exception {
+        var first = new InMemoryRedisConnectionFactory();
+        var second = new InMemoryRedisConnectionFactory();
+        var nodes = Map.<RedisNode, RedisConnectionFactory>of(new RedisNode("127.0.0.1", 7000), first,
+                new RedisNode("127.0.0.1", 7001), second);
+        int set = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        int flushAll = commandId(RedisServerCommands.class, "flushAll");
+        int select = commandId(RedisConnectionCommands.class, "select", int.class);
+        List<PipelinedCommandReplayer.BatchResult> failures = new CopyOnWriteArrayList<>();
+
+        try (var replayer = new ClusterSlotReplayer(ClusterSlotReplayerTest::topology, nodes::get, options(),
+                result -> {
+                    if (!result.isSuccess()) {
+                        failures.add(result);
+                    }
+                }, CommandMetrics.NONE)) {
+            for (int i = 0; i < 10; i++) {
+                replayer.submit(new RedisCommandRecord(set, new Object[]{key(i), key(i)}));
+            }
+            replayer.submit(new RedisCommandRecord(flushAll, new Object[0]));
+            replayer.submit(new RedisCommandRecord(select, new Object[]{1}));
+        }
+        Assertions.assertEquals(1, failures.size());
+        Assertions.assertEquals(select, failures.get(0).commands().get(0).commandId());
+        try (var firstConnection = first.getConnection(); var secondConnection = second.getConnection()) {
+            Assertions.assertEquals(0L, firstConnection.serverCommands().dbSize());
+            Assertions.assertEquals(0L, secondConnection.serverCommands().dbSize());
+        }
+    }
+
+    @Test
+    void testMovedCommandsKeepTheirOrder() throws Exception {
+        var owner = new InMemoryRedisConnectionFactory();
+        var ownerNode = new RedisNode("127.0.0.1", 7001);
+        var nodes = Map.<RedisNode, RedisConnectionFactory>of(new RedisNode("127.0.0.1", 7000), movedTo(ownerNode),
+                ownerNode, owner);
+        int set = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        List<PipelinedCommandReplayer.BatchResult> failures = new CopyOnWriteArrayList<>();
+
+        try (var replayer = new ClusterSlotReplayer(ClusterSlotReplayerTest::topology, nodes::get, options(),
+                result -> {
+                    if (!result.isSuccess()) {
+                        failures.add(result);
+                    }
+                }, CommandMetrics.NONE)) {
+            for (int version = 0; version < 20; version++) {
+                for (int i = 0; i < 50; i++) {
+                    replayer.submit(new RedisCommandRecord(set, new Object[]{key(i), key(version)}));
+                }
+            }
+            replayer.flush();
+        }
+        Assertions.assertTrue(failures.isEmpty());
+        try (var connection = owner.getConnection()) {
+            for (int i = 0; i < 50; i++) {
+                Assertions.assertArrayEquals(key(19), connection.stringCommands().get(key(i)));
+            }
+        }
+    }
+
+    @Test
+    void testRedirect() {
+        var moved = ClusterSlotReplayer.redirect(
+                new RedisSystemException("Error in execution", new RuntimeException("MOVED 3999 127.0.0.1:6381")));
+        var ask = ClusterSlotReplayer.redirect(new RuntimeException("ASK 3999 127.0.0.1:6382"));
+
+        Assertions.assertEquals(new ClusterSlotReplayer.Redirect(false, 3999, new RedisNode("127.0.0.1", 6381)), moved);
+        Assertions.assertEquals(new ClusterSlotReplayer.Redirect(true, 3999, new RedisNode("127.0.0.1", 6382)), ask);
+        Assertions.assertNull(ClusterSlotReplayer.redirect(new RuntimeException("WRONGTYPE")));
+    }
+
+    private static ClusterTopology topology() {
+        return new ClusterTopology(Set.of(master(7000, 0, 8191), master(7001, 8192, SlotHash.SLOT_COUNT - 1)));
+    }
+
+    private static RedisClusterNode master(int port, int lowerBound, int upperBound) {
+        return RedisClusterNode.newRedisClusterNode()
+                .listeningAt("127.0.0.1", port)
+                .promotedAs(RedisNode.NodeType.MASTER)
+                .serving(new RedisClusterNode.SlotRange(lowerBound, upperBound))
+                .build();
+    }
+
+    /**
+     * @return a node replying {@code MOVED} to {@code owner} to every {@code SET}
+     */
+    private static RedisConnectionFactory movedTo(RedisNode owner) {
+        return new RedisConnectionFactory() {
+            @Override
+            public RedisConnection getConnection() {
+                List<Object> pipelineResults = new ArrayList<>();
+                boolean[] pipelined = new boolean[1];
+                return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{RedisConnection.class}, (proxy, method, args) -> switch (method.getName()) {
+                            case "openPipeline" -> {
+                                pipelined[0] = true;
+                                yield null;
+                            }
+                            case "closePipeline" -> {
+                                pipelined[0] = false;
+                                var results = new ArrayList<>(pipelineResults);
+                                pipelineResults.clear();
+                                if (!results.isEmpty() && results.get(0) instanceof Exception e) {
+                                    throw new RedisPipelineException(e, results);
+                                }
+                                yield results;
+                            }
+                            case "isPipelined" -> pipelined[0];
+                            case "close" -> null;
+                            case "isClosed" -> false;
+                            case "set" -> {
+                                pipelineResults.add(new RedisSystemException("MOVED " + SlotHash.getSlot((byte[]) args[0])
+                                        + " " + owner.getHost() + ":" + owner.getPort(), null));
+                                yield null;
+                            }
+                            default -> {
+                                if (method.getName().endsWith("Commands") && method.getParameterCount() == 0) {
+                                    yield proxy;
+                                }
+                                throw new UnsupportedOperationException(method.getName());
+                            }
+                        });
+            }
+
+            @Override
+            public RedisClusterConnection getClusterConnection() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean getConvertPipelineAndTxResults() {
+                return true;
+            }
+
+            @Override
+            public RedisSentinelConnection getSentinelConnection() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+                return null;
+            }
+        };
+    }
+
+    private static byte[] key(int i) {
+        return ("key-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static PipelinedCommandReplayer.Options options() {
+        return new PipelinedCommandReplayer.Options(8, Duration.ofMillis(1), PipelinedCommandReplayer.Mode.PIPELINE);
+    }
+}
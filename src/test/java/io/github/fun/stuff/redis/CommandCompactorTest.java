@@ -0,0 +1,147 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnectionCommands;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisSetCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.zset.Tuple;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class CommandCompactorTest {
+
+    @Test
+    void testLaterSetSupersedes() throws NoSuchMethodException {
+        var window = List.of(set("a", "1"), incr("a"), set("b", "1"), set("a", "2"));
+
+        var compacted = CommandCompactor.compact(window);
+
+        Assertions.assertEquals(List.of(window.get(2), window.get(3)), compacted);
+    }
+
+    @Test
+    void testDelSupersedesEveryKey() throws NoSuchMethodException {
+        var window = List.of(set("a", "1"), set("b", "1"), del("a", "b"));
+
+        Assertions.assertEquals(List.of(window.get(2)), CommandCompactor.compact(window));
+    }
+
+    @Test
+    void testMultiKeyCommandKeepsEarlierWrites() throws NoSuchMethodException {
+        var window = List.of(set("a", "1"), rename("a", "b"), set("a", "2"));
+
+        Assertions.assertEquals(window, CommandCompactor.compact(window));
+    }
+
+    @Test
+    void testStoreCommandKeepsEarlierWritesOfItsSources() throws NoSuchMethodException {
+        var zAdd = new RedisCommandRecord(commandId(RedisZSetCommands.class, "zAdd", byte[].class, double.class, byte[].class),
+                new Object[]{bytes("z1"), 1d, bytes("m")});
+        var zUnionStore = new RedisCommandRecord(commandId(RedisZSetCommands.class, "zUnionStore", byte[].class, byte[][].class),
+                new Object[]{bytes("dst"), new byte[][]{bytes("z1")}});
+        var window = List.of(zAdd, zUnionStore, del("z1"));
+
+        Assertions.assertEquals(window, CommandCompactor.compact(window));
+    }
+
+    @Test
+    void testTransferKeepsEarlierWrites() throws NoSuchMethodException {
+        var move = new RedisCommandRecord(commandId(RedisKeyCommands.class, "move", byte[].class, int.class),
+                new Object[]{bytes("a"), 1});
+        var window = List.of(set("a", "1"), move, set("a", "2"));
+
+        Assertions.assertEquals(window, CommandCompactor.compact(window));
+    }
+
+    @Test
+    void testBarrier() throws NoSuchMethodException {
+        var select = new RedisCommandRecord(commandId(RedisConnectionCommands.class, "select", int.class), new Object[]{1});
+        var window = List.of(set("a", "1"), select, set("a", "2"));
+
+        Assertions.assertEquals(window, CommandCompactor.compact(window));
+    }
+
+    @Test
+    void testMergeHSet() throws NoSuchMethodException {
+        var window = List.of(hSet("h", "f1", "1"), set("x", "1"), hSet("h", "f2", "2"), hSet("h", "f1", "3"));
+
+        var compacted = CommandCompactor.compact(window);
+
+        Assertions.assertEquals(2, compacted.size());
+        var hMSet = compacted.get(0);
+        Assertions.assertEquals(commandId(RedisHashCommands.class, "hMSet", byte[].class, Map.class), hMSet.commandId());
+        var hashes = (Map<?, ?>) hMSet.args()[1];
+        Assertions.assertEquals(2, hashes.size());
+        hashes.forEach((field, value) -> Assertions.assertEquals(
+                new String((byte[]) field, StandardCharsets.UTF_8).equals("f1") ? "3" : "2",
+                new String((byte[]) value, StandardCharsets.UTF_8)));
+        Assertions.assertEquals(window.get(1), compacted.get(1));
+    }
+
+    @Test
+    void testMergeSAddAndZAdd() throws NoSuchMethodException {
+        int sAdd = commandId(RedisSetCommands.class, "sAdd", byte[].class, byte[][].class);
+        int zAdd = commandId(RedisZSetCommands.class, "zAdd", byte[].class, double.class, byte[].class);
+        var window = List.of(
+                new RedisCommandRecord(sAdd, new Object[]{bytes("s"), new byte[][]{bytes("1")}}),
+                new RedisCommandRecord(sAdd, new Object[]{bytes("s"), new byte[][]{bytes("2"), bytes("3")}}),
+                new RedisCommandRecord(zAdd, new Object[]{bytes("z"), 1d, bytes("m")}),
+                new RedisCommandRecord(zAdd, new Object[]{bytes("z"), 2d, bytes("m")}),
+                new RedisCommandRecord(zAdd, new Object[]{bytes("z"), 3d, bytes("n")}));
+
+        var compacted = CommandCompactor.compact(window);
+
+        Assertions.assertEquals(2, compacted.size());
+        Assertions.assertEquals(3, ((byte[][]) compacted.get(0).args()[1]).length);
+        @SuppressWarnings("unchecked")
+        var tuples = (Set<Tuple>) compacted.get(1).args()[1];
+        Assertions.assertEquals(List.of(2d, 3d), tuples.stream().map(Tuple::getScore).toList());
+    }
+
+    @Test
+    void testInterleavedWriteBreaksMerge() throws NoSuchMethodException {
+        var window = List.of(hSet("h", "f1", "1"), del("h"), hSet("h", "f2", "2"));
+
+        Assertions.assertEquals(List.of(window.get(1), window.get(2)), CommandCompactor.compact(window));
+    }
+
+    private static RedisCommandRecord set(String key, String value) throws NoSuchMethodException {
+        return new RedisCommandRecord(commandId(RedisStringCommands.class, "set", byte[].class, byte[].class),
+                new Object[]{bytes(key), bytes(value)});
+    }
+
+    private static RedisCommandRecord incr(String key) throws NoSuchMethodException {
+        return new RedisCommandRecord(commandId(RedisStringCommands.class, "incr", byte[].class), new Object[]{bytes(key)});
+    }
+
+    private static RedisCommandRecord del(String... keys) throws NoSuchMethodException {
+        byte[][] keyBytes = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            keyBytes[i] = bytes(keys[i]);
+        }
+        return new RedisCommandRecord(commandId(RedisKeyCommands.class, "del", byte[][].class), new Object[]{keyBytes});
+    }
+
+    private static RedisCommandRecord rename(String oldKey, String newKey) throws NoSuchMethodException {
+        return new RedisCommandRecord(commandId(RedisKeyCommands.class, "rename", byte[].class, byte[].class),
+                new Object[]{bytes(oldKey), bytes(newKey)});
+    }
+
+    private static RedisCommandRecord hSet(String key, String field, String value) throws NoSuchMethodException {
+        return new RedisCommandRecord(commandId(RedisHashCommands.class, "hSet", byte[].class, byte[].class, byte[].class),
+                new Object[]{bytes(key), bytes(field), bytes(value)});
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
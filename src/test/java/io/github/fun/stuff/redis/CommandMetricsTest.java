@@ -0,0 +1,62 @@
+package io.github.fun.stuff.redis;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class CommandMetricsTest {
+
+    @Test
+    void testBuckets() {
+        for (long value : new long[]{0, 1, 7, 8, 15, 16, 1_000, 123_456, 10_000_000_000L}) {
+            int bucket = LatencyHistogram.bucket(value);
+            Assertions.assertTrue(LatencyHistogram.highestValue(bucket) >= value, () -> "value " + value);
+            Assertions.assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value, () -> "value " + value);
+            Assertions.assertTrue(LatencyHistogram.highestValue(bucket) <= value * 1.125, () -> "value " + value);
+        }
+        Assertions.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPercentiles() {
+        var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        var snapshot = histogram.snapshot();
+
+        Assertions.assertEquals(1000, snapshot.count());
+        Assertions.assertEquals(500_000, snapshot.valueAt(50), 500_000 * 0.125);
+        Assertions.assertEquals(990_000, snapshot.valueAt(99), 990_000 * 0.125);
+        Assertions.assertEquals(1_000_000, snapshot.valueAt(100), 1_000_000 * 0.125);
+    }
+
+    @Test
+    void testMicrometer() throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        var metrics = new CommandMetrics();
+        var registry = new SimpleMeterRegistry();
+        new CommandMetricsBinder(metrics).bindTo(registry);
+
+        metrics.record(CommandMetrics.Stage.REPLAY, commandId, 2_000);
+        metrics.record(CommandMetrics.Stage.REPLAY, commandId, 4_000);
+
+        var timer = registry.get("redis.replication.command")
+                .tags("stage", "replay", "command", "SET")
+                .functionTimer();
+        Assertions.assertEquals(2, timer.count());
+        Assertions.assertEquals(6_000, timer.totalTime(TimeUnit.NANOSECONDS));
+        Assertions.assertNull(metrics.getSeries(CommandMetrics.Stage.CAPTURE, commandId));
+        Assertions.assertFalse(CommandMetrics.NONE.isEnabled());
+
+        metrics.recordDropped(commandId);
+        metrics.recordDropped(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID);
+        Assertions.assertEquals(1, metrics.getDroppedCount(commandId));
+        Assertions.assertEquals(2, registry.get("redis.replication.command.dropped").functionCounter().count());
+    }
+}
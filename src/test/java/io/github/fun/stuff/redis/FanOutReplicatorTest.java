@@ -0,0 +1,186 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class FanOutReplicatorTest {
+
+    private static final byte[] COUNTER = "counter".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEveryTargetReplaysTheLog() throws Exception {
+        var first = new InMemoryRedisConnectionFactory();
+        var second = new InMemoryRedisConnectionFactory();
+        try (var log = ReplicationLog.open(directory, options())) {
+            try (var replicator = new FanOutReplicator(log, List.of(target("first", first, 1), target("second", second, 4)))) {
+                appendIncrements(log, 100);
+
+                Assertions.assertTrue(replicator.awaitReplicated(Duration.ofSeconds(10)));
+                Assertions.assertEquals(0, replicator.getLag("first"));
+                Assertions.assertEquals(0, replicator.getLag("second"));
+            }
+            Assertions.assertEquals("100", get(first));
+            Assertions.assertEquals("100", get(second));
+            Assertions.assertEquals(log.getEndOffset(), log.openCursor("second").getOffset());
+        }
+    }
+
+    @Test
+    void testRejectedCommandsAreSkipped() throws Exception {
+        var target = new InMemoryRedisConnectionFactory();
+        try (var connection = target.getConnection()) {
+            // INCR on a hash fails with WRONGTYPE
+            connection.hashCommands().hMSet(COUNTER, Map.of(COUNTER, COUNTER));
+        }
+        try (var log = ReplicationLog.open(directory, options());
+             var replicator = new FanOutReplicator(log, List.of(target("target", target, 1)))) {
+            appendIncrements(log, 10);
+
+            Assertions.assertTrue(replicator.awaitReplicated(Duration.ofSeconds(10)));
+            Assertions.assertEquals(FanOutReplicator.State.RUNNING, replicator.getState("target"));
+            Assertions.assertEquals(0, replicator.getLag("target"));
+            Assertions.assertEquals(10, replicator.getRejectedCommandCount("target"));
+        }
+    }
+
+    @Test
+    void testConnectionFailureReplaysOnlyUnconfirmedCommands() throws Exception {
+        var target = new InMemoryRedisConnectionFactory();
+        try (var log = ReplicationLog.open(directory, options());
+             var replicator = new FanOutReplicator(log, List.of(target("target", failingIncr(target, 5, 1), 1)))) {
+            appendIncrements(log, 20);
+
+            Assertions.assertTrue(replicator.awaitReplicated(Duration.ofSeconds(10)));
+            Assertions.assertEquals(FanOutReplicator.State.RUNNING, replicator.getState("target"));
+        }
+        Assertions.assertEquals("20", get(target));
+    }
+
+    @Test
+    void testFailedTargetDoesNotStallTheOthers() throws Exception {
+        var healthy = new InMemoryRedisConnectionFactory();
+        var broken = failingIncr(new InMemoryRedisConnectionFactory(), 0, Integer.MAX_VALUE);
+        try (var log = ReplicationLog.open(directory, options());
+             var replicator = new FanOutReplicator(log, List.of(target("healthy", healthy, 1), target("broken", broken, 1)))) {
+            appendIncrements(log, 10);
+
+            Assertions.assertTrue(replicator.awaitReplicated(Duration.ofSeconds(10)));
+            Assertions.assertEquals(FanOutReplicator.State.RUNNING, replicator.getState("healthy"));
+            Assertions.assertEquals(FanOutReplicator.State.FAILED, replicator.getState("broken"));
+            Assertions.assertEquals(0, replicator.getLag("healthy"));
+            Assertions.assertEquals(log.getEndOffset(), replicator.getLag("broken"));
+            Assertions.assertEquals("10", get(healthy));
+        }
+    }
+
+    @Test
+    void testBackoff() {
+        var retryPolicy = new FanOutReplicator.RetryPolicy(5, Duration.ofMillis(100), Duration.ofMillis(300));
+
+        Assertions.assertEquals(Duration.ofMillis(100), retryPolicy.backoff(1));
+        Assertions.assertEquals(Duration.ofMillis(200), retryPolicy.backoff(2));
+        Assertions.assertEquals(Duration.ofMillis(300), retryPolicy.backoff(3));
+    }
+
+    private static FanOutReplicator.Target target(String name, RedisConnectionFactory connectionFactory, int lanes) {
+        return new FanOutReplicator.Target(name, connectionFactory, lanes,
+                new PipelinedCommandReplayer.Options(8, Duration.ofMillis(1), PipelinedCommandReplayer.Mode.PIPELINE),
+                new FanOutReplicator.RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(1)));
+    }
+
+    /**
+     * @return connections failing {@code failures} INCRs with a connection failure after {@code successes} INCRs
+     */
+    private static RedisConnectionFactory failingIncr(InMemoryRedisConnectionFactory delegate, int successes,
+                                                      int failures) {
+        var incrs = new AtomicInteger();
+        return new RedisConnectionFactory() {
+            @Override
+            public RedisConnection getConnection() {
+                var connection = delegate.getConnection();
+                return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{RedisConnection.class}, new InvocationHandler() {
+                            @Override
+                            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                                if (method.getName().endsWith("Commands") && method.getParameterCount() == 0) {
+                                    return proxy;
+                                }
+                                if (method.getName().equals("incr")) {
+                                    int incr = incrs.getAndIncrement();
+                                    if (incr >= successes && incr - successes < failures) {
+                                        throw new RedisConnectionFailureException("connection lost");
+                                    }
+                                }
+                                try {
+                                    return method.invoke(connection, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            }
+                        });
+            }
+
+            @Override
+            public RedisClusterConnection getClusterConnection() {
+                return delegate.getClusterConnection();
+            }
+
+            @Override
+            public boolean getConvertPipelineAndTxResults() {
+                return delegate.getConvertPipelineAndTxResults();
+            }
+
+            @Override
+            public RedisSentinelConnection getSentinelConnection() {
+                return delegate.getSentinelConnection();
+            }
+
+            @Override
+            public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+                return delegate.translateExceptionIfPossible(ex);
+            }
+        };
+    }
+
+    private static void appendIncrements(ReplicationLog log, int count) throws NoSuchMethodException {
+        int incr = commandId(RedisStringCommands.class, "incr", byte[].class);
+        for (int i = 0; i < count; i++) {
+            log.append(new RedisCommandRecord(incr, new Object[]{COUNTER}));
+        }
+    }
+
+    private static String get(RedisConnectionFactory connectionFactory) {
+        try (var connection = connectionFactory.getConnection()) {
+            return new String(connection.stringCommands().get(COUNTER), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static ReplicationLog.Options options() {
+        return new ReplicationLog.Options(64 * 1024, ReplicationLog.FsyncPolicy.NEVER, Duration.ZERO,
+                Duration.ofDays(1), Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Offline counterpart of a {@code @ServiceConnection("redis")} container: the {@link InMemoryRedisConnectionFactory}
+ * bean makes {@link RedisAutoConfiguration} skip its Lettuce connection and still create the templates, so
+ * {@code @SpringJUnitConfig(InMemoryRedisConfiguration.class)} is a Redis test without Docker.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+@ImportAutoConfiguration(RedisAutoConfiguration.class)
+class InMemoryRedisConfiguration {
+
+    @Bean
+    InMemoryRedisConnectionFactory redisConnectionFactory() {
+        return new InMemoryRedisConnectionFactory();
+    }
+}
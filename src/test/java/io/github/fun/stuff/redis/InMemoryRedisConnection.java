@@ -0,0 +1,947 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory {@link RedisConnection} for the offline tests and benchmarks, created by
+ * {@link InMemoryRedisConnectionFactory}. The string, hash, list, set, zset and key commands apply to a
+ * {@link Keyspace} shared by the connections of a factory, with {@code SELECT}, pipelines and {@code MULTI}/{@code EXEC}.
+ * <p>
+ * Replies are the ones Spring Data Redis returns over Lettuce, expired keys are evicted on access, and values are
+ * kept as given, not copied. Any other command throws {@link UnsupportedOperationException}.
+ */
+final class InMemoryRedisConnection implements InvocationHandler {
+
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final Comparator<Map.Entry<ByteBuffer, Double>> BY_SCORE =
+            Map.Entry.<ByteBuffer, Double>comparingByValue()
+                    .thenComparing(entry -> entry.getKey().array(), Arrays::compareUnsigned);
+
+    /**
+     * The databases of a factory, every command runs holding its monitor.
+     */
+    static final class Keyspace {
+
+        static final int DATABASES = 16;
+
+        private final List<Map<ByteBuffer, Value>> databases = new ArrayList<>(DATABASES);
+
+        Keyspace() {
+            for (int i = 0; i < DATABASES; i++) {
+                databases.add(new HashMap<>());
+            }
+        }
+    }
+
+    private static final class Value {
+        private Object data;
+        private long expireAt;
+
+        private Value(Object data) {
+            this.data = data;
+        }
+    }
+
+    private static final class HashValue extends LinkedHashMap<ByteBuffer, byte[]> {
+    }
+
+    private static final class ListValue extends ArrayList<byte[]> {
+    }
+
+    private static final class SetValue extends LinkedHashSet<ByteBuffer> {
+    }
+
+    private static final class ZSetValue extends HashMap<ByteBuffer, Double> {
+    }
+
+    private record QueuedCommand(Method method, Object[] args) {
+    }
+
+    private final Keyspace keyspace;
+    private Map<ByteBuffer, Value> database;
+    private List<Object> pipelineResults;
+    private List<QueuedCommand> transaction;
+    private boolean closed;
+
+    private InMemoryRedisConnection(Keyspace keyspace) {
+        this.keyspace = keyspace;
+        this.database = keyspace.databases.get(0);
+    }
+
+    static RedisConnection create(Keyspace keyspace) {
+        return (RedisConnection) Proxy.newProxyInstance(InMemoryRedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, new InMemoryRedisConnection(keyspace));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        args = args == null ? NO_ARGS : args;
+        switch (method.getName()) {
+            case "commands", "keyCommands", "stringCommands", "listCommands", "setCommands", "zSetCommands",
+                 "hashCommands", "geoCommands", "hyperLogLogCommands", "streamCommands", "scriptingCommands",
+                 "serverCommands" -> {
+                return proxy;
+            }
+            case "hashCode" -> {
+                return System.identityHashCode(proxy);
+            }
+            case "equals" -> {
+                return proxy == args[0];
+            }
+            case "toString" -> {
+                return "InMemoryRedisConnection";
+            }
+            case "close" -> {
+                closed = true;
+                return null;
+            }
+            case "isClosed" -> {
+                return closed;
+            }
+            case "getNativeConnection" -> {
+                return keyspace;
+            }
+            case "isPipelined" -> {
+                return pipelineResults != null;
+            }
+            case "isQueueing" -> {
+                return transaction != null;
+            }
+            case "openPipeline" -> {
+                if (pipelineResults == null) {
+                    pipelineResults = new ArrayList<>();
+                }
+                return null;
+            }
+            case "closePipeline" -> {
+                return closePipeline();
+            }
+            case "multi" -> {
+                transaction = new ArrayList<>();
+                return null;
+            }
+            case "exec" -> {
+                return reply(exec());
+            }
+            case "discard" -> {
+                requireTransaction();
+                transaction = null;
+                return null;
+            }
+            case "watch", "unwatch" -> {
+                return null;
+            }
+            case "select" -> {
+                int index = (Integer) args[0];
+                if (index < 0 || index >= Keyspace.DATABASES) {
+                    throw new RedisSystemException("ERR DB index is out of range", null);
+                }
+                database = keyspace.databases.get(index);
+                return null;
+            }
+            default -> {
+                if (transaction != null) {
+                    transaction.add(new QueuedCommand(method, args));
+                    return null;
+                }
+                if (pipelineResults != null) {
+                    try {
+                        pipelineResults.add(execute(method, args));
+                    } catch (RedisSystemException e) {
+                        pipelineResults.add(e);
+                    }
+                    return null;
+                }
+                return execute(method, args);
+            }
+        }
+    }
+
+    private Object reply(Object result) {
+        if (pipelineResults == null) {
+            return result;
+        }
+        pipelineResults.add(result);
+        return null;
+    }
+
+    private List<Object> closePipeline() {
+        if (pipelineResults == null) {
+            return List.of();
+        }
+        var results = pipelineResults;
+        pipelineResults = null;
+        for (Object result : results) {
+            if (result instanceof Exception e) {
+                throw new RedisPipelineException(e, results);
+            }
+        }
+        return results;
+    }
+
+    private List<Object> exec() {
+        requireTransaction();
+        var commands = transaction;
+        transaction = null;
+        List<Object> results = new ArrayList<>(commands.size());
+        synchronized (keyspace) {
+            for (QueuedCommand command : commands) {
+                try {
+                    results.add(command(command.method(), command.args()));
+                } catch (RedisSystemException e) {
+                    results.add(e);
+                }
+            }
+        }
+        return results;
+    }
+
+    private void requireTransaction() {
+        if (transaction == null) {
+            throw new RedisSystemException("ERR EXEC without MULTI", null);
+        }
+    }
+
+    private Object execute(Method method, Object[] args) {
+        synchronized (keyspace) {
+            return command(method, args);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object command(Method method, Object[] args) {
+        return switch (method.getName()) {
+            // connection and server
+            case "ping" -> "PONG";
+            case "echo" -> args[0];
+            case "dbSize" -> (long) database.size();
+            case "flushDb" -> {
+                database.clear();
+                yield null;
+            }
+            case "flushAll" -> {
+                keyspace.databases.forEach(Map::clear);
+                yield null;
+            }
+            // keys
+            case "exists" -> args[0] instanceof byte[][] keys ? countExisting(keys) : lookup(args[0]) != null;
+            case "touch" -> countExisting((byte[][]) args[0]);
+            case "del", "unlink" -> {
+                long removed = 0;
+                for (byte[] key : (byte[][]) args[0]) {
+                    if (lookup(key) != null) {
+                        database.remove(ByteBuffer.wrap(key));
+                        removed++;
+                    }
+                }
+                yield removed;
+            }
+            case "type" -> type(lookup(args[0]));
+            case "keys" -> keys((byte[]) args[0]);
+            case "rename" -> {
+                rename(args[0], args[1], false);
+                yield null;
+            }
+            case "renameNX" -> rename(args[0], args[1], true);
+            case "expire" -> expireAt(args[0], System.currentTimeMillis() + TimeUnit.SECONDS.toMillis((Long) args[1]));
+            case "pExpire" -> expireAt(args[0], System.currentTimeMillis() + (Long) args[1]);
+            case "expireAt" -> expireAt(args[0], TimeUnit.SECONDS.toMillis((Long) args[1]));
+            case "pExpireAt" -> expireAt(args[0], (Long) args[1]);
+            case "persist" -> {
+                var value = lookup(args[0]);
+                if (value == null || value.expireAt == 0) {
+                    yield false;
+                }
+                value.expireAt = 0;
+                yield true;
+            }
+            case "ttl" -> ttl(args[0], args.length > 1 ? (TimeUnit) args[1] : TimeUnit.SECONDS);
+            case "pTtl" -> ttl(args[0], args.length > 1 ? (TimeUnit) args[1] : TimeUnit.MILLISECONDS);
+            // strings
+            case "get" -> container(args[0], byte[].class, null);
+            case "set" -> args.length == 2 ? set(args[0], (byte[]) args[1], Expiration.persistent(), SetOption.upsert())
+                    : set(args[0], (byte[]) args[1], (Expiration) args[2], (SetOption) args[3]);
+            case "setNX" -> set(args[0], (byte[]) args[1], Expiration.persistent(), SetOption.ifAbsent());
+            case "setEx" -> set(args[0], (byte[]) args[2], Expiration.seconds((Long) args[1]), SetOption.upsert());
+            case "pSetEx" -> set(args[0], (byte[]) args[2], Expiration.milliseconds((Long) args[1]), SetOption.upsert());
+            case "getSet" -> {
+                var old = container(args[0], byte[].class, null);
+                set(args[0], (byte[]) args[1], Expiration.persistent(), SetOption.upsert());
+                yield old;
+            }
+            case "getDel" -> {
+                var old = container(args[0], byte[].class, null);
+                database.remove(ByteBuffer.wrap((byte[]) args[0]));
+                yield old;
+            }
+            case "mGet" -> {
+                List<byte[]> values = new ArrayList<>();
+                for (byte[] key : (byte[][]) args[0]) {
+                    var value = lookup(key);
+                    values.add(value != null && value.data instanceof byte[] bytes ? bytes : null);
+                }
+                yield values;
+            }
+            case "mSet" -> {
+                ((Map<byte[], byte[]>) args[0]).forEach((key, value) ->
+                        set(key, value, Expiration.persistent(), SetOption.upsert()));
+                yield true;
+            }
+            case "mSetNX" -> {
+                var tuples = (Map<byte[], byte[]>) args[0];
+                if (tuples.keySet().stream().anyMatch(key -> lookup(key) != null)) {
+                    yield false;
+                }
+                tuples.forEach((key, value) -> set(key, value, Expiration.persistent(), SetOption.upsert()));
+                yield true;
+            }
+            case "incr" -> incrBy(args[0], 1);
+            case "decr" -> incrBy(args[0], -1);
+            // boxed separately, a conditional over double and long would widen the long result to double
+            case "incrBy" -> args[1] instanceof Double increment ? (Object) incrByFloat(args[0], increment)
+                    : (Object) incrBy(args[0], (Long) args[1]);
+            case "decrBy" -> incrBy(args[0], Math.negateExact((Long) args[1]));
+            case "append" -> {
+                var old = container(args[0], byte[].class, null);
+                var appended = old == null ? (byte[]) args[1] : concat(old, (byte[]) args[1]);
+                update(args[0], appended);
+                yield (long) appended.length;
+            }
+            case "strLen" -> {
+                var value = container(args[0], byte[].class, null);
+                yield value == null ? 0L : (long) value.length;
+            }
+            case "getRange" -> {
+                var value = container(args[0], byte[].class, null);
+                if (value == null) {
+                    yield new byte[0];
+                }
+                int[] range = range((Long) args[1], (Long) args[2], value.length);
+                yield Arrays.copyOfRange(value, range[0], range[1]);
+            }
+            case "setRange" -> {
+                var old = container(args[0], byte[].class, null);
+                var value = (byte[]) args[1];
+                int offset = Math.toIntExact((Long) args[2]);
+                var updated = Arrays.copyOf(old == null ? new byte[0] : old,
+                        Math.max(old == null ? 0 : old.length, offset + value.length));
+                System.arraycopy(value, 0, updated, offset, value.length);
+                update(args[0], updated);
+                yield null;
+            }
+            // hashes
+            case "hSet" -> container(args[0], HashValue.class, HashValue::new).put(copy(args[1]), (byte[]) args[2]) == null;
+            case "hSetNX" -> container(args[0], HashValue.class, HashValue::new).putIfAbsent(copy(args[1]), (byte[]) args[2]) == null;
+            case "hGet" -> {
+                var hash = container(args[0], HashValue.class, null);
+                yield hash == null ? null : hash.get(ByteBuffer.wrap((byte[]) args[1]));
+            }
+            case "hMGet" -> {
+                var hash = container(args[0], HashValue.class, null);
+                List<byte[]> values = new ArrayList<>();
+                for (byte[] field : (byte[][]) args[1]) {
+                    values.add(hash == null ? null : hash.get(ByteBuffer.wrap(field)));
+                }
+                yield values;
+            }
+            case "hMSet" -> {
+                var hash = container(args[0], HashValue.class, HashValue::new);
+                ((Map<byte[], byte[]>) args[1]).forEach((field, value) -> hash.put(copy(field), value));
+                yield null;
+            }
+            case "hDel" -> {
+                var hash = container(args[0], HashValue.class, null);
+                long removed = 0;
+                for (byte[] field : (byte[][]) args[1]) {
+                    if (hash != null && hash.remove(ByteBuffer.wrap(field)) != null) {
+                        removed++;
+                    }
+                }
+                removeIfEmpty(args[0], hash);
+                yield removed;
+            }
+            case "hExists" -> {
+                var hash = container(args[0], HashValue.class, null);
+                yield hash != null && hash.containsKey(ByteBuffer.wrap((byte[]) args[1]));
+            }
+            case "hLen" -> {
+                var hash = container(args[0], HashValue.class, null);
+                yield hash == null ? 0L : (long) hash.size();
+            }
+            case "hKeys" -> {
+                var hash = container(args[0], HashValue.class, null);
+                yield hash == null ? new LinkedHashSet<byte[]>() : toBytes(hash.keySet());
+            }
+            case "hVals" -> {
+                var hash = container(args[0], HashValue.class, null);
+                yield hash == null ? new ArrayList<byte[]>() : new ArrayList<>(hash.values());
+            }
+            case "hGetAll" -> {
+                var hash = container(args[0], HashValue.class, null);
+                Map<byte[], byte[]> entries = new LinkedHashMap<>();
+                if (hash != null) {
+                    hash.forEach((field, value) -> entries.put(field.array(), value));
+                }
+                yield entries;
+            }
+            case "hIncrBy" -> {
+                var hash = container(args[0], HashValue.class, HashValue::new);
+                var field = copy(args[1]);
+                if (args[2] instanceof Double increment) {
+                    double value = toDouble(hash.get(field)) + increment;
+                    hash.put(field, toBytes(value));
+                    yield value;
+                }
+                long value = addExact(toLong(hash.get(field)), (Long) args[2]);
+                hash.put(field, toBytes(value));
+                yield value;
+            }
+            case "hStrLen" -> {
+                var hash = container(args[0], HashValue.class, null);
+                var value = hash == null ? null : hash.get(ByteBuffer.wrap((byte[]) args[1]));
+                yield value == null ? 0L : (long) value.length;
+            }
+            // lists
+            case "lPush", "rPush" -> {
+                var list = container(args[0], ListValue.class, ListValue::new);
+                for (byte[] value : (byte[][]) args[1]) {
+                    list.add(method.getName().equals("lPush") ? 0 : list.size(), value);
+                }
+                yield (long) list.size();
+            }
+            case "lPushX", "rPushX" -> {
+                var list = container(args[0], ListValue.class, null);
+                if (list == null) {
+                    yield 0L;
+                }
+                list.add(method.getName().equals("lPushX") ? 0 : list.size(), (byte[]) args[1]);
+                yield (long) list.size();
+            }
+            case "lPop", "rPop" -> {
+                var list = container(args[0], ListValue.class, null);
+                boolean left = method.getName().equals("lPop");
+                if (args.length == 1) {
+                    var value = list == null ? null : list.remove(left ? 0 : list.size() - 1);
+                    removeIfEmpty(args[0], list);
+                    yield value;
+                }
+                List<byte[]> values = new ArrayList<>();
+                for (long i = 0; list != null && !list.isEmpty() && i < (Long) args[1]; i++) {
+                    values.add(list.remove(left ? 0 : list.size() - 1));
+                }
+                removeIfEmpty(args[0], list);
+                yield values;
+            }
+            case "lRange" -> {
+                var list = container(args[0], ListValue.class, null);
+                if (list == null) {
+                    yield new ArrayList<byte[]>();
+                }
+                int[] range = range((Long) args[1], (Long) args[2], list.size());
+                yield new ArrayList<>(list.subList(range[0], range[1]));
+            }
+            case "lLen" -> {
+                var list = container(args[0], ListValue.class, null);
+                yield list == null ? 0L : (long) list.size();
+            }
+            case "lIndex" -> {
+                var list = container(args[0], ListValue.class, null);
+                int index = list == null ? -1 : index((Long) args[1], list.size());
+                yield index < 0 ? null : list.get(index);
+            }
+            case "lSet" -> {
+                var list = container(args[0], ListValue.class, null);
+                if (list == null) {
+                    throw new RedisSystemException("ERR no such key", null);
+                }
+                int index = index((Long) args[1], list.size());
+                if (index < 0) {
+                    throw new RedisSystemException("ERR index out of range", null);
+                }
+                list.set(index, (byte[]) args[2]);
+                yield null;
+            }
+            case "lTrim" -> {
+                var list = container(args[0], ListValue.class, null);
+                if (list != null) {
+                    int[] range = range((Long) args[1], (Long) args[2], list.size());
+                    var kept = new ArrayList<>(list.subList(range[0], range[1]));
+                    list.clear();
+                    list.addAll(kept);
+                    removeIfEmpty(args[0], list);
+                }
+                yield null;
+            }
+            case "lRem" -> {
+                var list = container(args[0], ListValue.class, null);
+                long count = (Long) args[1];
+                var value = (byte[]) args[2];
+                long removed = 0;
+                if (list != null) {
+                    var iterator = count < 0 ? reversed(list) : list.listIterator();
+                    while (iterator.hasNext() && (count == 0 || removed < Math.abs(count))) {
+                        if (Arrays.equals(iterator.next(), value)) {
+                            iterator.remove();
+                            removed++;
+                        }
+                    }
+                    removeIfEmpty(args[0], list);
+                }
+                yield removed;
+            }
+            // sets
+            case "sAdd" -> {
+                var set = container(args[0], SetValue.class, SetValue::new);
+                long added = 0;
+                for (byte[] member : (byte[][]) args[1]) {
+                    if (set.add(copy(member))) {
+                        added++;
+                    }
+                }
+                yield added;
+            }
+            case "sRem" -> {
+                var set = container(args[0], SetValue.class, null);
+                long removed = 0;
+                for (byte[] member : (byte[][]) args[1]) {
+                    if (set != null && set.remove(ByteBuffer.wrap(member))) {
+                        removed++;
+                    }
+                }
+                removeIfEmpty(args[0], set);
+                yield removed;
+            }
+            case "sMembers" -> {
+                var set = container(args[0], SetValue.class, null);
+                yield set == null ? new LinkedHashSet<byte[]>() : toBytes(set);
+            }
+            case "sIsMember" -> {
+                var set = container(args[0], SetValue.class, null);
+                yield set != null && set.contains(ByteBuffer.wrap((byte[]) args[1]));
+            }
+            case "sCard" -> {
+                var set = container(args[0], SetValue.class, null);
+                yield set == null ? 0L : (long) set.size();
+            }
+            case "sPop" -> {
+                var set = container(args[0], SetValue.class, null);
+                List<byte[]> members = new ArrayList<>();
+                long count = args.length == 1 ? 1 : (Long) args[1];
+                for (var iterator = set == null ? null : set.iterator();
+                     iterator != null && iterator.hasNext() && members.size() < count; ) {
+                    members.add(iterator.next().array());
+                    iterator.remove();
+                }
+                removeIfEmpty(args[0], set);
+                yield args.length == 1 ? (members.isEmpty() ? null : members.get(0)) : members;
+            }
+            case "sInter", "sUnion", "sDiff" -> {
+                var keys = (byte[][]) args[0];
+                var first = container(keys[0], SetValue.class, null);
+                Set<ByteBuffer> result = first == null ? new LinkedHashSet<>() : new LinkedHashSet<>(first);
+                for (int i = 1; i < keys.length; i++) {
+                    var other = container(keys[i], SetValue.class, null);
+                    Set<ByteBuffer> members = other == null ? Set.of() : other;
+                    switch (method.getName()) {
+                        case "sInter" -> result.retainAll(members);
+                        case "sUnion" -> result.addAll(members);
+                        default -> result.removeAll(members);
+                    }
+                }
+                yield toBytes(result);
+            }
+            // sorted sets
+            case "zAdd" -> {
+                var zSet = container(args[0], ZSetValue.class, ZSetValue::new);
+                var zAddArgs = args[args.length - 1] instanceof ZAddArgs flags ? flags : ZAddArgs.empty();
+                if (args[1] instanceof Set<?> tuples) {
+                    long changed = 0;
+                    for (Object tuple : tuples) {
+                        if (zAdd(zSet, ((Tuple) tuple).getValue(), ((Tuple) tuple).getScore(), zAddArgs)) {
+                            changed++;
+                        }
+                    }
+                    removeIfEmpty(args[0], zSet);
+                    yield changed;
+                }
+                boolean changed = zAdd(zSet, (byte[]) args[2], (Double) args[1], zAddArgs);
+                removeIfEmpty(args[0], zSet);
+                yield changed;
+            }
+            case "zRem" -> {
+                var zSet = container(args[0], ZSetValue.class, null);
+                long removed = 0;
+                for (byte[] member : (byte[][]) args[1]) {
+                    if (zSet != null && zSet.remove(ByteBuffer.wrap(member)) != null) {
+                        removed++;
+                    }
+                }
+                removeIfEmpty(args[0], zSet);
+                yield removed;
+            }
+            case "zScore" -> {
+                var zSet = container(args[0], ZSetValue.class, null);
+                yield zSet == null ? null : zSet.get(ByteBuffer.wrap((byte[]) args[1]));
+            }
+            case "zCard" -> {
+                var zSet = container(args[0], ZSetValue.class, null);
+                yield zSet == null ? 0L : (long) zSet.size();
+            }
+            case "zIncrBy" -> container(args[0], ZSetValue.class, ZSetValue::new)
+                    .merge(copy(args[2]), (Double) args[1], Double::sum);
+            case "zRange", "zRevRange", "zRangeWithScores", "zRevRangeWithScores" -> {
+                var zSet = container(args[0], ZSetValue.class, null);
+                var entries = sorted(zSet, method.getName().startsWith("zRev"));
+                int[] range = range((Long) args[1], (Long) args[2], entries.size());
+                boolean withScores = method.getName().endsWith("WithScores");
+                Set<Object> members = new LinkedHashSet<>();
+                for (var entry : entries.subList(range[0], range[1])) {
+                    members.add(withScores ? new DefaultTuple(entry.getKey().array(), entry.getValue())
+                            : entry.getKey().array());
+                }
+                yield members;
+            }
+            case "zRank", "zRevRank" -> {
+                var zSet = container(args[0], ZSetValue.class, null);
+                var member = ByteBuffer.wrap((byte[]) args[1]);
+                var entries = sorted(zSet, method.getName().equals("zRevRank"));
+                for (int i = 0; i < entries.size(); i++) {
+                    if (entries.get(i).getKey().equals(member)) {
+                        yield (long) i;
+                    }
+                }
+                yield null;
+            }
+            default -> throw new UnsupportedOperationException(
+                    method.getName() + " is not supported by the in-memory connection");
+        };
+    }
+
+    private Value lookup(Object key) {
+        var buffer = ByteBuffer.wrap((byte[]) key);
+        var value = database.get(buffer);
+        if (value != null && value.expireAt != 0 && value.expireAt <= System.currentTimeMillis()) {
+            database.remove(buffer);
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * @param factory creates a missing key, {@code null} to return {@code null} instead
+     */
+    private <T> T container(Object key, Class<T> type, Supplier<T> factory) {
+        var value = lookup(key);
+        if (value == null) {
+            if (factory == null) {
+                return null;
+            }
+            T data = factory.get();
+            database.put(copy(key), new Value(data));
+            return data;
+        }
+        if (!type.isInstance(value.data)) {
+            throw new RedisSystemException("WRONGTYPE Operation against a key holding the wrong kind of value", null);
+        }
+        return type.cast(value.data);
+    }
+
+    private void removeIfEmpty(Object key, Map<?, ?> container) {
+        if (container != null && container.isEmpty()) {
+            database.remove(ByteBuffer.wrap((byte[]) key));
+        }
+    }
+
+    private void removeIfEmpty(Object key, Collection<?> container) {
+        if (container != null && container.isEmpty()) {
+            database.remove(ByteBuffer.wrap((byte[]) key));
+        }
+    }
+
+    private boolean set(Object key, byte[] data, Expiration expiration, SetOption option) {
+        var value = lookup(key);
+        if (option == SetOption.SET_IF_ABSENT && value != null || option == SetOption.SET_IF_PRESENT && value == null) {
+            return false;
+        }
+        if (value != null && expiration.isKeepTtl()) {
+            value.data = data;
+            return true;
+        }
+        value = new Value(data);
+        if (!expiration.isPersistent() && !expiration.isKeepTtl()) {
+            value.expireAt = expiration.isUnixTimestamp()
+                    ? expiration.getExpirationTimeInMilliseconds()
+                    : System.currentTimeMillis() + expiration.getExpirationTimeInMilliseconds();
+        }
+        database.put(copy(key), value);
+        return true;
+    }
+
+    /**
+     * Replaces a string value, keeping its time to live.
+     */
+    private void update(Object key, byte[] data) {
+        var value = lookup(key);
+        if (value == null) {
+            database.put(copy(key), new Value(data));
+        } else {
+            value.data = data;
+        }
+    }
+
+    private long incrBy(Object key, long increment) {
+        long value = addExact(toLong(container(key, byte[].class, null)), increment);
+        update(key, toBytes(value));
+        return value;
+    }
+
+    private double incrByFloat(Object key, double increment) {
+        double value = toDouble(container(key, byte[].class, null)) + increment;
+        update(key, toBytes(value));
+        return value;
+    }
+
+    private long countExisting(byte[][] keys) {
+        long count = 0;
+        for (byte[] key : keys) {
+            if (lookup(key) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Set<byte[]> keys(byte[] glob) {
+        var pattern = globPattern(new String(glob, StandardCharsets.UTF_8));
+        Set<byte[]> keys = new LinkedHashSet<>();
+        for (ByteBuffer key : List.copyOf(database.keySet())) {
+            if (lookup(key.array()) != null && pattern.matcher(new String(key.array(), StandardCharsets.UTF_8)).matches()) {
+                keys.add(key.array());
+            }
+        }
+        return keys;
+    }
+
+    private boolean rename(Object oldKey, Object newKey, boolean ifAbsent) {
+        var value = lookup(oldKey);
+        if (value == null) {
+            throw new RedisSystemException("ERR no such key", null);
+        }
+        if (ifAbsent && lookup(newKey) != null) {
+            return false;
+        }
+        database.remove(ByteBuffer.wrap((byte[]) oldKey));
+        database.put(copy(newKey), value);
+        return true;
+    }
+
+    private boolean expireAt(Object key, long expireAt) {
+        var value = lookup(key);
+        if (value == null) {
+            return false;
+        }
+        if (expireAt <= System.currentTimeMillis()) {
+            database.remove(ByteBuffer.wrap((byte[]) key));
+        } else {
+            value.expireAt = expireAt;
+        }
+        return true;
+    }
+
+    private long ttl(Object key, TimeUnit unit) {
+        var value = lookup(key);
+        if (value == null) {
+            return -2;
+        }
+        if (value.expireAt == 0) {
+            return -1;
+        }
+        return unit.convert(value.expireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean zAdd(ZSetValue zSet, byte[] member, double score, ZAddArgs args) {
+        var key = ByteBuffer.wrap(member);
+        var old = zSet.get(key);
+        if (args.contains(ZAddArgs.Flag.NX) && old != null || args.contains(ZAddArgs.Flag.XX) && old == null
+                || old != null && args.contains(ZAddArgs.Flag.GT) && score <= old
+                || old != null && args.contains(ZAddArgs.Flag.LT) && score >= old) {
+            return false;
+        }
+        zSet.put(old == null ? copy(member) : key, score);
+        return old == null || args.contains(ZAddArgs.Flag.CH) && old != score;
+    }
+
+    private static List<Map.Entry<ByteBuffer, Double>> sorted(ZSetValue zSet, boolean reverse) {
+        if (zSet == null) {
+            return List.of();
+        }
+        List<Map.Entry<ByteBuffer, Double>> entries = new ArrayList<>(zSet.entrySet());
+        entries.sort(reverse ? BY_SCORE.reversed() : BY_SCORE);
+        return entries;
+    }
+
+    private static DataType type(Value value) {
+        if (value == null) {
+            return DataType.NONE;
+        }
+        if (value.data instanceof HashValue) {
+            return DataType.HASH;
+        }
+        if (value.data instanceof ListValue) {
+            return DataType.LIST;
+        }
+        if (value.data instanceof SetValue) {
+            return DataType.SET;
+        }
+        if (value.data instanceof ZSetValue) {
+            return DataType.ZSET;
+        }
+        return DataType.STRING;
+    }
+
+    /**
+     * @return the {@code [from, to)} indexes of the inclusive Redis range {@code start..end}, negative from the end
+     */
+    private static int[] range(long start, long end, int size) {
+        long from = start < 0 ? Math.max(0, size + start) : start;
+        long to = end < 0 ? size + end : Math.min(end, size - 1L);
+        if (from >= size || from > to) {
+            return new int[]{0, 0};
+        }
+        return new int[]{(int) from, (int) to + 1};
+    }
+
+    /**
+     * @return the list index, {@code -1} when out of range
+     */
+    private static int index(long index, int size) {
+        long resolved = index < 0 ? size + index : index;
+        return resolved < 0 || resolved >= size ? -1 : (int) resolved;
+    }
+
+    private static Iterator<byte[]> reversed(List<byte[]> list) {
+        var iterator = list.listIterator(list.size());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasPrevious();
+            }
+
+            @Override
+            public byte[] next() {
+                return iterator.previous();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+        };
+    }
+
+    private static Pattern globPattern(String glob) {
+        var regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '[' -> {
+                    int close = glob.indexOf(']', i + 1);
+                    if (close < 0) {
+                        regex.append("\\[");
+                    } else {
+                        var chars = glob.substring(i + 1, close);
+                        regex.append('[').append(chars.startsWith("^") ? "^" + Pattern.quote(chars.substring(1))
+                                : Pattern.quote(chars)).append(']');
+                        i = close;
+                    }
+                }
+                case '\\' -> {
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static Set<byte[]> toBytes(Set<ByteBuffer> buffers) {
+        Set<byte[]> bytes = new LinkedHashSet<>();
+        buffers.forEach(buffer -> bytes.add(buffer.array()));
+        return bytes;
+    }
+
+    private static ByteBuffer copy(Object bytes) {
+        return ByteBuffer.wrap(((byte[]) bytes).clone());
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        var concatenated = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, concatenated, first.length, second.length);
+        return concatenated;
+    }
+
+    private static long addExact(long value, long increment) {
+        try {
+            return Math.addExact(value, increment);
+        } catch (ArithmeticException e) {
+            throw new RedisSystemException("ERR increment or decrement would overflow", e);
+        }
+    }
+
+    private static long toLong(byte[] value) {
+        try {
+            return value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new RedisSystemException("ERR value is not an integer or out of range", e);
+        }
+    }
+
+    private static double toDouble(byte[] value) {
+        try {
+            return value == null ? 0 : Double.parseDouble(new String(value, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new RedisSystemException("ERR value is not a valid float", e);
+        }
+    }
+
+    private static byte[] toBytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] toBytes(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
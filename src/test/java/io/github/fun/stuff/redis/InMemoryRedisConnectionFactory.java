@@ -0,0 +1,42 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+/**
+ * {@link RedisConnectionFactory} of {@link InMemoryRedisConnection}s, every connection of a factory sees the same
+ * data.
+ */
+final class InMemoryRedisConnectionFactory implements RedisConnectionFactory {
+
+    private final InMemoryRedisConnection.Keyspace keyspace = new InMemoryRedisConnection.Keyspace();
+
+    @Override
+    public RedisConnection getConnection() {
+        return InMemoryRedisConnection.create(keyspace);
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new InvalidDataAccessApiUsageException("cluster is not supported by the in-memory connection");
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return true;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new InvalidDataAccessApiUsageException("sentinel is not supported by the in-memory connection");
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return ex instanceof DataAccessException dataAccessException ? dataAccessException : null;
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+@SpringJUnitConfig(InMemoryRedisConfiguration.class)
+class InMemoryRedisConnectionTest {
+
+    @Autowired
+    StringRedisTemplate redisTemplate;
+    @Autowired
+    RedisConnectionFactory redisConnectionFactory;
+
+    @BeforeEach
+    void flushAll() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void testCommandGroups() {
+        redisTemplate.opsForValue().set("string", "value");
+        Assertions.assertEquals("value", redisTemplate.opsForValue().get("string"));
+        Assertions.assertEquals(2L, redisTemplate.opsForValue().increment("counter", 2));
+
+        redisTemplate.opsForHash().put("hash", "field", "value");
+        Assertions.assertEquals(Map.of("field", "value"), redisTemplate.opsForHash().entries("hash"));
+
+        redisTemplate.opsForList().rightPushAll("list", "a", "b", "c");
+        Assertions.assertEquals(List.of("b", "c"), redisTemplate.opsForList().range("list", 1, -1));
+
+        redisTemplate.opsForSet().add("set", "a", "b", "a");
+        Assertions.assertEquals(Set.of("a", "b"), redisTemplate.opsForSet().members("set"));
+
+        redisTemplate.opsForZSet().add("zset", "b", 2);
+        redisTemplate.opsForZSet().add("zset", "a", 1);
+        Assertions.assertEquals(List.of("a", "b"), new ArrayList<>(redisTemplate.opsForZSet().range("zset", 0, -1)));
+
+        Assertions.assertEquals(Set.of("string", "set"), redisTemplate.keys("s*"));
+        Assertions.assertTrue(redisTemplate.expire("string", Duration.ofMinutes(1)));
+        Assertions.assertTrue(redisTemplate.getExpire("string") > 0);
+        Assertions.assertTrue(redisTemplate.delete("string"));
+        Assertions.assertFalse(redisTemplate.hasKey("string"));
+    }
+
+    @Test
+    void testWrongType() {
+        redisTemplate.opsForHash().put("hash", "field", "value");
+
+        Assertions.assertThrows(RedisSystemException.class, () -> redisTemplate.opsForValue().get("hash"));
+    }
+
+    @Test
+    void testPipelineAndTransaction() {
+        var results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().set(bytes("key"), bytes("value"));
+            connection.stringCommands().get(bytes("key"));
+            return null;
+        });
+        Assertions.assertEquals(List.of(true, "value"), results);
+
+        try (var connection = redisConnectionFactory.getConnection()) {
+            connection.multi();
+            Assertions.assertNull(connection.stringCommands().incr(bytes("counter")));
+            connection.stringCommands().incrBy(bytes("counter"), 2);
+            Assertions.assertEquals(List.of(1L, 3L), connection.exec());
+        }
+    }
+
+    @Test
+    void testReplay() throws Exception {
+        int set = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        for (PipelinedCommandReplayer.Mode mode : PipelinedCommandReplayer.Mode.values()) {
+            List<PipelinedCommandReplayer.BatchResult> results = new ArrayList<>();
+            var options = new PipelinedCommandReplayer.Options(16, Duration.ofMillis(1), mode);
+            try (var replayer = new PipelinedCommandReplayer(redisConnectionFactory, options, results::add)) {
+                for (int i = 0; i < 100; i++) {
+                    replayer.submit(new RedisCommandRecord(set, new Object[]{bytes(mode + "-" + i), bytes("value-" + i)}));
+                }
+                replayer.flush();
+            }
+
+            Assertions.assertTrue(results.stream().allMatch(PipelinedCommandReplayer.BatchResult::isSuccess));
+            Assertions.assertEquals(100, results.stream().mapToInt(result -> result.commands().size()).sum());
+            Assertions.assertEquals("value-99", redisTemplate.opsForValue().get(mode + "-99"));
+        }
+    }
+
+    @Test
+    void testReplayOutlivesFailingListener() throws Exception {
+        int set = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        var options = new PipelinedCommandReplayer.Options(1, Duration.ZERO, PipelinedCommandReplayer.Mode.PIPELINE);
+        try (var replayer = new PipelinedCommandReplayer(redisConnectionFactory, options, result -> {
+            throw new IllegalStateException("listener failure");
+        })) {
+            for (int i = 0; i < 10; i++) {
+                replayer.submit(new RedisCommandRecord(set, new Object[]{bytes("key-" + i), bytes("value-" + i)}));
+            }
+            replayer.flush();
+        }
+
+        Assertions.assertEquals("value-9", redisTemplate.opsForValue().get("key-9"));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
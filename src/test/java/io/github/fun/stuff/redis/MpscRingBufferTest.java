@@ -0,0 +1,67 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class MpscRingBufferTest {
+
+    @Test
+    void testOfferPoll() {
+        var ringBuffer = new MpscRingBuffer<Integer>(4, MpscRingBuffer.WaitStrategy.SPIN);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(ringBuffer.offer(i));
+        }
+        Assertions.assertFalse(ringBuffer.offer(4));
+
+        Assertions.assertEquals(0, ringBuffer.poll());
+        Assertions.assertTrue(ringBuffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        Assertions.assertEquals(4, ringBuffer.drain(drained::add, 10));
+        Assertions.assertEquals(List.of(1, 2, 3, 4), drained);
+        Assertions.assertNull(ringBuffer.poll());
+    }
+
+    @Test
+    void testCapacityMustBePowerOfTwo() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new MpscRingBuffer<>(3, MpscRingBuffer.WaitStrategy.SPIN));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MpscRingBuffer.WaitStrategy.class)
+    void testProducersKeepTheirOrder(MpscRingBuffer.WaitStrategy waitStrategy) throws Exception {
+        int producers = 8;
+        int perProducer = 20_000;
+        var ringBuffer = new MpscRingBuffer<long[]>(256, waitStrategy);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    for (int i = 0; i < perProducer; i++) {
+                        ringBuffer.put(new long[]{producer, i});
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        long[] next = new long[producers];
+        for (int received = 0; received < producers * perProducer; received++) {
+            var element = ringBuffer.poll(10, TimeUnit.SECONDS);
+            Assertions.assertNotNull(element);
+            Assertions.assertEquals(next[(int) element[0]]++, element[1]);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertNull(ringBuffer.poll());
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class OffHeapBufferPoolTest {
+
+    @Test
+    void testSlabsAreRecycled() {
+        var pool = new OffHeapBufferPool(1024, 4);
+        for (int round = 0; round < 100; round++) {
+            List<PooledBuffer> buffers = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                buffers.add(pool.allocate(100));
+            }
+            buffers.forEach(PooledBuffer::release);
+        }
+        Assertions.assertTrue(pool.getAllocatedSlabCount() <= 4, () -> pool.getAllocatedSlabCount() + " slabs");
+    }
+
+    @Test
+    void testRetainedBufferKeepsSlab() {
+        var pool = new OffHeapBufferPool(64, 4);
+        var buffer = pool.allocate(64);
+        buffer.buffer().putLong(0, 42);
+        buffer.retain();
+        buffer.release();
+
+        // fills and retires the first slab
+        pool.allocate(64).release();
+        pool.allocate(64).release();
+
+        Assertions.assertEquals(42, buffer.buffer().getLong(0));
+        buffer.release();
+        Assertions.assertThrows(IllegalStateException.class, buffer::release);
+        Assertions.assertThrows(IllegalStateException.class, buffer::retain);
+    }
+
+    @Test
+    void testOversizedBuffer() {
+        var pool = new OffHeapBufferPool(64, 4);
+        var buffer = pool.allocate(1000);
+
+        Assertions.assertEquals(1000, buffer.buffer().capacity());
+        Assertions.assertTrue(buffer.buffer().isDirect());
+        buffer.release();
+    }
+
+    @Test
+    void testEncoder() throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        var pool = new OffHeapBufferPool(4096, 4);
+        List<PooledBuffer> captured = new ArrayList<>();
+        var encoder = new OffHeapCommandEncoder(pool, captured::add);
+
+        encoder.accept(new RedisCommandRecord(commandId, new Object[]{
+                "key".getBytes(StandardCharsets.UTF_8), "value".getBytes(StandardCharsets.UTF_8)}));
+
+        var decoded = RedisCommandCodec.decode(captured.get(0).buffer().duplicate());
+        Assertions.assertEquals(commandId, decoded.commandId());
+        Assertions.assertArrayEquals("value".getBytes(StandardCharsets.UTF_8), (byte[]) decoded.args()[1]);
+        captured.get(0).release();
+    }
+
+    @Test
+    void testEncoderDropsUnsupportedArguments() throws NoSuchMethodException {
+        int geoAdd = commandId(RedisGeoCommands.class, "geoAdd", byte[].class, Point.class, byte[].class);
+        var pool = new OffHeapBufferPool(4096, 4);
+        var metrics = new CommandMetrics();
+        List<PooledBuffer> captured = new ArrayList<>();
+        var encoder = new OffHeapCommandEncoder(pool, captured::add, metrics);
+
+        encoder.accept(new RedisCommandRecord(geoAdd, new Object[]{
+                "key".getBytes(StandardCharsets.UTF_8), new Point(1, 2), "member".getBytes(StandardCharsets.UTF_8)}));
+
+        Assertions.assertTrue(captured.isEmpty());
+        Assertions.assertEquals(1, metrics.getDroppedCount(geoAdd));
+    }
+}
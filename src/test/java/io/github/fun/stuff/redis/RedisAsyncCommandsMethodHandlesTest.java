@@ -0,0 +1,61 @@
+package io.github.fun.stuff.redis;
+
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class RedisAsyncCommandsMethodHandlesTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisAsyncCommandsMethodHandlesTest.class);
+
+    private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testMapping() throws NoSuchMethodException {
+        Assertions.assertTrue(RedisAsyncCommandsMethodHandles.isMapped(commandId(RedisStringCommands.class, "set", byte[].class, byte[].class)));
+        Assertions.assertTrue(RedisAsyncCommandsMethodHandles.isMapped(commandId(RedisKeyCommands.class, "del", byte[][].class)));
+        Assertions.assertTrue(RedisAsyncCommandsMethodHandles.isMapped(commandId(RedisListCommands.class, "bLPop", int.class, byte[][].class)));
+        Assertions.assertFalse(RedisAsyncCommandsMethodHandles.isMapped(commandId(RedisStringCommands.class, "set",
+                byte[].class, byte[].class, Expiration.class, RedisStringCommands.SetOption.class)));
+        Assertions.assertFalse(RedisAsyncCommandsMethodHandles.isMapped(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID));
+
+        long mapped = IntStream.range(0, RedisCommandsMethodHandles.getCommandIdLimit())
+                .filter(RedisAsyncCommandsMethodHandles::isMapped)
+                .count();
+        LOG.info("{} of {} commands have an async handle", mapped, RedisCommandsMethodHandles.getCommandIdLimit());
+    }
+
+    @Test
+    void testInvoker() throws Throwable {
+        List<String> calls = new ArrayList<>();
+        var asyncCommands = (RedisClusterAsyncCommands<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisClusterAsyncCommands.class}, (proxy, method, args) -> {
+                    calls.add(method.getName() + "/" + args.length);
+                    return null;
+                });
+
+        RedisAsyncCommandsMethodHandles.getInvoker(commandId(RedisStringCommands.class, "set", byte[].class, byte[].class))
+                .invoke(asyncCommands, new Object[]{KEY, VALUE});
+        RedisAsyncCommandsMethodHandles.getInvoker(commandId(RedisKeyCommands.class, "del", byte[][].class))
+                .invoke(asyncCommands, new Object[]{new byte[][]{KEY, VALUE}});
+        RedisAsyncCommandsMethodHandles.getInvoker(commandId(RedisListCommands.class, "bLPop", int.class, byte[][].class))
+                .invoke(asyncCommands, new Object[]{1, new byte[][]{KEY}});
+
+        Assertions.assertEquals(List.of("set/2", "del/1", "blpop/2"), calls);
+    }
+}
@@ -0,0 +1,182 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+class RedisCommandCodecTest {
+
+    private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    private final ByteBufferPool pool = new ByteBufferPool(false, 1024, 16);
+
+    @Test
+    void testSet() throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+
+        var decoded = roundTrip(commandId, KEY, VALUE);
+
+        Assertions.assertEquals(commandId, decoded.commandId());
+        Assertions.assertArrayEquals(KEY, (byte[]) decoded.args()[0]);
+        Assertions.assertArrayEquals(VALUE, (byte[]) decoded.args()[1]);
+    }
+
+    @Test
+    void testSetWithExpiration() throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class,
+                Expiration.class, RedisStringCommands.SetOption.class);
+
+        var decoded = roundTrip(commandId, KEY, VALUE, Expiration.from(10, TimeUnit.SECONDS),
+                RedisStringCommands.SetOption.SET_IF_ABSENT);
+
+        var expiration = (Expiration) decoded.args()[2];
+        Assertions.assertEquals(10, expiration.getExpirationTime());
+        Assertions.assertEquals(TimeUnit.SECONDS, expiration.getTimeUnit());
+        Assertions.assertEquals(RedisStringCommands.SetOption.SET_IF_ABSENT, decoded.args()[3]);
+        Assertions.assertFalse(expiration.isUnixTimestamp());
+    }
+
+    @Test
+    void testSetWithUnixTimestampExpiration() throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class,
+                Expiration.class, RedisStringCommands.SetOption.class);
+
+        var decoded = roundTrip(commandId, KEY, VALUE, Expiration.unixTimestamp(1_760_000_000L, TimeUnit.SECONDS),
+                RedisStringCommands.SetOption.UPSERT);
+
+        var expiration = (Expiration) decoded.args()[2];
+        Assertions.assertTrue(expiration.isUnixTimestamp());
+        Assertions.assertEquals(1_760_000_000L, expiration.getExpirationTime());
+        Assertions.assertEquals(TimeUnit.SECONDS, expiration.getTimeUnit());
+    }
+
+    @Test
+    void testIncrByNegative() throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "incrBy", byte[].class, long.class);
+
+        var decoded = roundTrip(commandId, KEY, -42L);
+
+        Assertions.assertEquals(-42L, decoded.args()[1]);
+    }
+
+    @Test
+    void testDel() throws NoSuchMethodException {
+        int commandId = commandId(RedisKeyCommands.class, "del", byte[][].class);
+
+        var decoded = roundTrip(commandId, (Object) new byte[][]{KEY, VALUE});
+
+        byte[][] keys = (byte[][]) decoded.args()[0];
+        Assertions.assertArrayEquals(KEY, keys[0]);
+        Assertions.assertArrayEquals(VALUE, keys[1]);
+    }
+
+    @Test
+    void testHMSet() throws NoSuchMethodException {
+        int commandId = commandId(RedisHashCommands.class, "hMSet", byte[].class, Map.class);
+
+        var decoded = roundTrip(commandId, KEY, Map.of(VALUE, VALUE));
+
+        var hashes = (Map<?, ?>) decoded.args()[1];
+        Assertions.assertEquals(1, hashes.size());
+        hashes.forEach((field, value) -> Assertions.assertArrayEquals(VALUE, (byte[]) value));
+    }
+
+    @Test
+    void testZAdd() throws NoSuchMethodException {
+        int commandId = commandId(RedisZSetCommands.class, "zAdd", byte[].class, double.class, byte[].class);
+
+        var decoded = roundTrip(commandId, KEY, 1.5d, VALUE);
+
+        Assertions.assertEquals(1.5d, decoded.args()[1]);
+    }
+
+    @Test
+    void testTuples() {
+        var codec = RedisCommandCodec.argumentCodec(Set.class);
+        Set<Tuple> tuples = new LinkedHashSet<>();
+        tuples.add(new DefaultTuple(KEY, 1.5));
+        tuples.add(new DefaultTuple(VALUE, -2d));
+
+        var buffer = ByteBuffer.allocate(codec.size(tuples));
+        codec.write(tuples, buffer);
+
+        Assertions.assertEquals(tuples, codec.read(buffer.flip()));
+    }
+
+    @Test
+    void testUnsupportedParameterType() throws NoSuchMethodException {
+        int commandId = commandId(RedisKeyCommands.class, "scan", ScanOptions.class);
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> RedisCommandCodec.encodedSize(commandId, new Object[]{ScanOptions.NONE}));
+    }
+
+    @Test
+    void testXAck() throws NoSuchMethodException {
+        int commandId = commandId(RedisStreamCommands.class, "xAck", byte[].class, String.class, RecordId[].class);
+
+        var decoded = roundTrip(commandId, KEY, "group", new RecordId[]{RecordId.of("1-0"), RecordId.of("2-1")});
+
+        Assertions.assertEquals("group", decoded.args()[1]);
+        Assertions.assertArrayEquals(new RecordId[]{RecordId.of("1-0"), RecordId.of("2-1")}, (RecordId[]) decoded.args()[2]);
+    }
+
+    @Test
+    void testEncodedSizeIsUpperBound() throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        Object[] args = {KEY, new byte[300]};
+
+        var buffer = RedisCommandCodec.encode(new RedisCommandRecord(commandId, args), pool);
+
+        Assertions.assertTrue(buffer.remaining() <= RedisCommandCodec.encodedSize(commandId, args));
+        pool.release(buffer);
+    }
+
+    @Test
+    void testCorruptedRecord() throws NoSuchMethodException {
+        int commandId = commandId(RedisKeyCommands.class, "del", byte[][].class);
+        var oversized = ByteBuffer.allocate(16);
+        RedisCommandCodec.writeVarint(oversized, commandId);
+        RedisCommandCodec.writeVarint(oversized, Integer.MAX_VALUE);
+        var truncated = RedisCommandCodec.encode(new RedisCommandRecord(commandId, new Object[]{new byte[][]{KEY}}), pool);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> RedisCommandCodec.decode(oversized.flip()));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> RedisCommandCodec.decode(truncated.limit(truncated.limit() - 1)));
+        pool.release(truncated);
+    }
+
+    private RedisCommandRecord roundTrip(int commandId, Object... args) {
+        ByteBuffer buffer = RedisCommandCodec.encode(new RedisCommandRecord(commandId, args), pool);
+        try {
+            var decoded = RedisCommandCodec.decode(buffer);
+            Assertions.assertFalse(buffer.hasRemaining());
+            return decoded;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    static int commandId(Class<?> commandsInterface, String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        int commandId = RedisCommandsMethodHandles.getCommandId(commandsInterface.getMethod(name, parameterTypes));
+        Assertions.assertNotEquals(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID, commandId);
+        return commandId;
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class RedisCommandKeysTest {
+
+    @Test
+    void testKeyPositions() throws NoSuchMethodException {
+        Assertions.assertArrayEquals(new int[]{0},
+                RedisCommandKeys.getKeyPositions(commandId(RedisStringCommands.class, "set", byte[].class, byte[].class)));
+        Assertions.assertArrayEquals(new int[]{0, 1},
+                RedisCommandKeys.getKeyPositions(commandId(RedisKeyCommands.class, "rename", byte[].class, byte[].class)));
+        Assertions.assertArrayEquals(new int[]{0},
+                RedisCommandKeys.getKeyPositions(commandId(RedisKeyCommands.class, "del", byte[][].class)));
+        Assertions.assertArrayEquals(new int[0],
+                RedisCommandKeys.getKeyPositions(commandId(RedisServerCommands.class, "flushDb")));
+        Assertions.assertArrayEquals(new int[]{0, 1},
+                RedisCommandKeys.getKeyPositions(commandId(RedisZSetCommands.class, "zUnionStore", byte[].class, byte[][].class)));
+        Assertions.assertArrayEquals(new int[]{0, 3}, RedisCommandKeys.getKeyPositions(commandId(RedisZSetCommands.class,
+                "zInterStore", byte[].class, Aggregate.class, Weights.class, byte[][].class)));
+        Assertions.assertTrue(RedisCommandKeys.isKeyless(commandId(RedisServerCommands.class, "flushAll")));
+        Assertions.assertFalse(RedisCommandKeys.isKeyless(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID));
+        for (int commandId = 0; commandId < RedisCommandsMethodHandles.getCommandIdLimit(); commandId++) {
+            // every keys column of the spec resolves against the parameters of its methods
+            RedisCommandKeys.getKeyPositions(commandId);
+        }
+    }
+
+    @Test
+    void testKeys() throws NoSuchMethodException {
+        int zUnionStore = commandId(RedisZSetCommands.class, "zUnionStore", byte[].class, byte[][].class);
+        int mSet = commandId(RedisStringCommands.class, "mSet", Map.class);
+        int xAdd = commandId(RedisStreamCommands.class, "xAdd", MapRecord.class);
+        int eval = commandId(RedisScriptingCommands.class, "eval", byte[].class, ReturnType.class, int.class, byte[][].class);
+
+        assertKeys(List.of("dst", "z1", "z2"),
+                new RedisCommandRecord(zUnionStore, new Object[]{bytes("dst"), new byte[][]{bytes("z1"), bytes("z2")}}));
+        assertKeys(List.of("a"), new RedisCommandRecord(mSet, new Object[]{Map.of(bytes("a"), bytes("1"))}));
+        assertKeys(List.of("s"), new RedisCommandRecord(xAdd,
+                new Object[]{MapRecord.create(bytes("s"), Map.of(bytes("f"), bytes("v")))}));
+        assertKeys(List.of("k"), new RedisCommandRecord(eval,
+                new Object[]{bytes("return 1"), ReturnType.INTEGER, 1, new byte[][]{bytes("k"), bytes("arg")}}));
+        assertKeys(List.of(), new RedisCommandRecord(commandId(RedisServerCommands.class, "flushAll"), new Object[0]));
+        Assertions.assertNull(RedisCommandKeys.getKeys(new RedisCommandRecord(eval,
+                new Object[]{bytes("return 1"), ReturnType.INTEGER, 3, new byte[][]{bytes("k")}})));
+    }
+
+    @Test
+    void testSlot() throws NoSuchMethodException {
+        int rename = commandId(RedisKeyCommands.class, "rename", byte[].class, byte[].class);
+        int del = commandId(RedisKeyCommands.class, "del", byte[][].class);
+        int zUnionStore = commandId(RedisZSetCommands.class, "zUnionStore", byte[].class, byte[][].class);
+
+        Assertions.assertNotEquals(RedisCommandKeys.NO_SLOT,
+                RedisCommandKeys.getSlot(new RedisCommandRecord(rename, new Object[]{bytes("{user:1}:a"), bytes("{user:1}:b")})));
+        Assertions.assertEquals(RedisCommandKeys.NO_SLOT,
+                RedisCommandKeys.getSlot(new RedisCommandRecord(rename, new Object[]{bytes("a"), bytes("b")})));
+        Assertions.assertEquals(RedisCommandKeys.getSlot(new RedisCommandRecord(del, new Object[]{new byte[][]{bytes("a")}})),
+                RedisCommandKeys.getSlot(new RedisCommandRecord(rename, new Object[]{bytes("a"), bytes("a")})));
+        Assertions.assertEquals(RedisCommandKeys.NO_SLOT, RedisCommandKeys.getSlot(new RedisCommandRecord(zUnionStore,
+                new Object[]{bytes("dst"), new byte[][]{bytes("z1")}})));
+        Assertions.assertNotEquals(RedisCommandKeys.NO_SLOT, RedisCommandKeys.getSlot(new RedisCommandRecord(zUnionStore,
+                new Object[]{bytes("{z}dst"), new byte[][]{bytes("{z}1")}})));
+    }
+
+    private static void assertKeys(List<String> expected, RedisCommandRecord command) {
+        Assertions.assertEquals(expected, RedisCommandKeys.getKeys(command).stream()
+                .map(key -> new String(key, StandardCharsets.UTF_8)).toList());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
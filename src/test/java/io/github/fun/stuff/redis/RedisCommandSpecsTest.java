@@ -0,0 +1,62 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.SortParameters;
+
+import java.util.TreeSet;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class RedisCommandSpecsTest {
+
+    @Test
+    void testEveryCommandIsClassified() {
+        var rawSpecs = RedisCommandSpecs.load(getClass().getClassLoader());
+        var missing = new TreeSet<String>();
+        RedisCommandsMethodHandles.getMethodSignatures().forEach(methodSignature -> {
+            var entry = RedisCommandsMethodHandles.getCommandEntry(RedisCommandsMethodHandles.getCommandId(methodSignature));
+            if (!rawSpecs.containsKey(entry.methodName())
+                    && rawSpecs.keySet().stream().noneMatch(name -> name.startsWith(entry.methodName() + "/"))) {
+                missing.add(entry.methodName());
+            }
+        });
+        Assertions.assertTrue(missing.isEmpty(), "not in " + RedisCommandSpecs.SPEC_RESOURCE + ": " + missing);
+    }
+
+    @Test
+    void testWrite() throws NoSuchMethodException {
+        Assertions.assertTrue(RedisCommandSpecs.isWrite(commandId(RedisStringCommands.class, "set", byte[].class, byte[].class)));
+        Assertions.assertFalse(RedisCommandSpecs.isWrite(commandId(RedisStringCommands.class, "get", byte[].class)));
+        Assertions.assertFalse(RedisCommandSpecs.isWrite(commandId(RedisKeyCommands.class, "sort", byte[].class, SortParameters.class)));
+        Assertions.assertTrue(RedisCommandSpecs.isWrite(commandId(RedisKeyCommands.class, "sort", byte[].class, SortParameters.class, byte[].class)));
+        Assertions.assertFalse(RedisCommandSpecs.isWrite(commandId(RedisServerCommands.class, "migrate", byte[].class, RedisNode.class,
+                int.class, RedisServerCommands.MigrateOption.class)));
+        Assertions.assertTrue(RedisCommandSpecs.isWrite(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID));
+    }
+
+    @Test
+    void testSpec() throws NoSuchMethodException {
+        var bLPop = RedisCommandSpecs.getSpec(commandId(RedisListCommands.class, "bLPop", int.class, byte[][].class));
+        Assertions.assertEquals("BLPOP", bLPop.command());
+        Assertions.assertTrue(bLPop.write());
+        Assertions.assertTrue(bLPop.blocking());
+        Assertions.assertArrayEquals(new int[]{1}, bLPop.keyPositions());
+
+        var set = RedisCommandSpecs.getSpec(commandId(RedisStringCommands.class, "set", byte[].class, byte[].class));
+        Assertions.assertTrue(set.idempotent());
+        Assertions.assertFalse(set.blocking());
+
+        var incrBy = RedisCommandSpecs.getSpec(commandId(RedisStringCommands.class, "incrBy", byte[].class, long.class));
+        Assertions.assertFalse(incrBy.idempotent());
+
+        var expire = RedisCommandSpecs.getSpec(commandId(RedisKeyCommands.class, "pExpire", byte[].class, long.class));
+        Assertions.assertTrue(expire.write());
+        Assertions.assertFalse(expire.idempotent());
+    }
+}
@@ -3,12 +3,27 @@ package io.github.fun.stuff.redis;
 import org.jboss.jandex.Index;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.RedisCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 class RedisCommandsMethodHandlesTest {
 
+    private static final Logger LOG = LoggerFactory.getLogger(RedisCommandsMethodHandlesTest.class);
+
     @Test
     void testClassLoader() throws ClassNotFoundException, IOException {
         var contextClassLoader = Thread.currentThread().getContextClassLoader();
@@ -21,8 +36,120 @@ class RedisCommandsMethodHandlesTest {
 
     @Test
     void testLoadRedisCommandsMethodHandle() {
-        Assertions.assertDoesNotThrow(() -> RedisCommandsMethodHandles.METHOD_HANDLE_MAP.keySet().forEach(System.out::println));
+        Assertions.assertDoesNotThrow(() -> RedisCommandsMethodHandles.getMethodSignatures().forEach(System.out::println));
+    }
+
+    @Test
+    void testResolveAllRedisCommandsMethodHandle() {
+        RedisCommandsMethodHandles.getMethodSignatures().forEach(methodSignature ->
+                Assertions.assertNotNull(RedisCommandsMethodHandles.getMethodHandle(methodSignature), methodSignature));
+    }
+
+    @Test
+    void testCommandIdRoundTrip() {
+        RedisCommandsMethodHandles.getMethodSignatures().forEach(methodSignature -> {
+            int commandId = RedisCommandsMethodHandles.getCommandId(methodSignature);
+            Assertions.assertEquals(methodSignature, RedisCommandsMethodHandles.getMethodSignature(commandId));
+            Assertions.assertSame(RedisCommandsMethodHandles.getMethodHandle(methodSignature),
+                    RedisCommandsMethodHandles.getMethodHandle(commandId));
+        });
+        Assertions.assertEquals(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID, RedisCommandsMethodHandles.getCommandId("unknown()"));
+        Assertions.assertNull(RedisCommandsMethodHandles.getMethodHandle(Integer.MAX_VALUE));
     }
 
+    @Test
+    void testInvokers() throws Throwable {
+        var stringCommands = (RedisStringCommands) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisStringCommands.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "set" -> Boolean.TRUE;
+                    case "incrBy" -> Long.valueOf((Long) args[1] + 1);
+                    case "setRange" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+
+        int set = RedisCommandsMethodHandles.getCommandId("java.lang.Boolean set(byte[] key, byte[] value)");
+        Object[] setArgs = {key, "value".getBytes(StandardCharsets.UTF_8)};
+        Assertions.assertEquals(Boolean.TRUE, RedisCommandsMethodHandles.getInvoker(set).invoke(stringCommands, setArgs));
+        Assertions.assertEquals(Boolean.TRUE,
+                (Object) RedisCommandsMethodHandles.getSpreadMethodHandle(set).invokeExact((Object) stringCommands, setArgs));
+
+        int incrBy = RedisCommandsMethodHandles.getCommandId("java.lang.Long incrBy(byte[] key, long value)");
+        Assertions.assertEquals(2L, RedisCommandsMethodHandles.getInvoker(incrBy).invoke(stringCommands, new Object[]{key, 1L}));
+
+        int setRange = RedisCommandsMethodHandles.getCommandId("void setRange(byte[] key, byte[] value, long offset)");
+        Assertions.assertNull(RedisCommandsMethodHandles.getInvoker(setRange).invoke(stringCommands, new Object[]{key, key, 0L}));
+    }
+
+    @Test
+    void testCommandIdsAreAppendOnly() throws IOException {
+        var registry = new LinkedHashMap<String, Integer>();
+        RedisCommandIds.assign(registry, List.of("b()", "a()"));
+        RedisCommandIds.assign(registry, List.of("c()", "a()", "0()"));
+
+        var writer = new StringWriter();
+        RedisCommandIds.write(registry, writer);
+        var read = RedisCommandIds.read(new BufferedReader(new StringReader(writer.toString())));
+
+        Assertions.assertEquals(0, read.get("a()"));
+        Assertions.assertEquals(1, read.get("b()"));
+        Assertions.assertEquals(2, read.get("0()"));
+        Assertions.assertEquals(3, read.get("c()"));
+    }
+
+    @Test
+    void testIndexRoundTrip() throws IOException {
+        var classLoader = getClass().getClassLoader();
+        var entries = RedisCommandsIndexGenerator.scan(classLoader, new LinkedHashMap<>());
 
+        var writer = new StringWriter();
+        RedisCommandsIndex.write(entries, writer);
+        var read = RedisCommandsIndex.read(new BufferedReader(new StringReader(writer.toString())));
+
+        Assertions.assertEquals(entries, read);
+    }
+
+    @Test
+    void testWarmUp() {
+        var methodSignature = "java.lang.Boolean set(byte[] key, byte[] value)";
+
+        Assertions.assertEquals(1, RedisCommandsMethodHandles.warmUp(List.of(methodSignature, "void unknown()")));
+        Assertions.assertTrue(RedisCommandsMethodHandles.getInvokedMethodSignatures().contains(methodSignature));
+    }
+
+    @Test
+    void testProfileRoundTrip(@TempDir Path directory) throws IOException {
+        var methodSignature = "java.lang.Long incr(byte[] key)";
+        Assertions.assertNotEquals(RedisCommandsMethodHandles.UNKNOWN_COMMAND_ID,
+                RedisCommandsMethodHandles.getCommandId(methodSignature));
+        RedisCommandsMethodHandles.warmUp(List.of(methodSignature));
+        var profile = directory.resolve("redis-commands.profile");
+
+        RedisCommandsProfile.save(profile);
+
+        var saved = Files.readAllLines(profile, StandardCharsets.UTF_8);
+        Assertions.assertTrue(saved.contains(methodSignature));
+        Assertions.assertEquals(saved.size(), RedisCommandsProfile.warmUp(profile));
+        Assertions.assertEquals(0, RedisCommandsProfile.warmUp(directory.resolve("missing.profile")));
+    }
+
+    @Test
+    void showIndexLoadTime() throws IOException {
+        var classLoader = getClass().getClassLoader();
+
+        long start = System.nanoTime();
+        var entries = RedisCommandsIndexGenerator.scan(classLoader, new LinkedHashMap<>());
+        long scanNanos = System.nanoTime() - start;
+
+        var writer = new StringWriter();
+        RedisCommandsIndex.write(entries, writer);
+
+        start = System.nanoTime();
+        RedisCommandsIndex.read(new BufferedReader(new StringReader(writer.toString())));
+        long readNanos = System.nanoTime() - start;
+
+        LOG.info("jandex scan {} us, precomputed index {} us for {} commands",
+                scanNanos / 1000, readNanos / 1000, entries.size());
+    }
 }
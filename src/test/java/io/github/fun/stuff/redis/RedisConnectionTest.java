@@ -8,11 +8,10 @@ import org.jboss.jandex.Index;
 import org.jboss.jandex.MethodInfo;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
-import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
 import org.springframework.data.redis.connection.RedisCommands;
 import org.springframework.data.redis.connection.RedisConnectionCommands;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -33,9 +32,6 @@ import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
-import org.testcontainers.containers.GenericContainer;
-import org.testcontainers.junit.jupiter.Container;
-import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandle;
@@ -43,24 +39,21 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Modifier;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static org.testcontainers.utility.DockerImageName.parse;
 
-
-@Testcontainers
 @SpringJUnitConfig(classes = {
-        RedisAutoConfiguration.class,
+        RedisContainerPoolConfiguration.class,
 })
+@ExtendWith(RedisContainerExtension.class)
 class RedisConnectionTest {
 
     private static final Logger LOG = LoggerFactory.getLogger(RedisConnectionTest.class);
-    @Container
-    @ServiceConnection("redis")
-    static GenericContainer<?> redisContainer = new GenericContainer<>(parse("redis:latest")).withExposedPorts(6379);
 
 
     @Test
@@ -137,5 +130,32 @@ class RedisConnectionTest {
         Assertions.assertEquals("value", stringRedisSerializer.deserialize(value));
     }
 
+    @Test
+    void showAsyncReplayThroughput(@Autowired RedisConnectionFactory redisConnectionFactory) throws Throwable {
+        int commandId = RedisCommandsMethodHandles.getCommandId("java.lang.Boolean set(byte[] key, byte[] value)");
+        int count = 20_000;
+        List<RedisCommandRecord> commands = IntStream.range(0, count)
+                .mapToObj(i -> new RedisCommandRecord(commandId, new Object[]{
+                        ("key-" + i).getBytes(StandardCharsets.UTF_8), ("value-" + i).getBytes(StandardCharsets.UTF_8)}))
+                .toList();
+
+        long start = System.nanoTime();
+        try (var connection = redisConnectionFactory.getConnection()) {
+            for (RedisCommandRecord command : commands) {
+                PipelinedCommandReplayer.invoke(connection, command);
+            }
+        }
+        long syncNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        try (var replayer = new AsyncCommandReplayer(redisConnectionFactory, 1024, Duration.ofSeconds(10),
+                result -> Assertions.assertTrue(result.isSuccess(), () -> String.valueOf(result.error())))) {
+            commands.forEach(replayer::submit);
+        }
+        long asyncNanos = System.nanoTime() - start;
+
+        LOG.info("sync replay {} commands/s", count * 1_000_000_000L / syncNanos);
+        LOG.info("async replay {} commands/s", count * 1_000_000_000L / asyncNanos);
+    }
 
 }
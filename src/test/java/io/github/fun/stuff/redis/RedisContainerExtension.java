@@ -0,0 +1,20 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Empties the Redis database of the test before each test: the {@link RedisContainerPool.Lease} of the Spring test
+ * context when it has one, {@link RedisContainerPool#shared() database 0 of the shared container} otherwise.
+ */
+class RedisContainerExtension implements BeforeEachCallback {
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        var lease = SpringExtension.getApplicationContext(context)
+                .getBeanProvider(RedisContainerPool.Lease.class)
+                .getIfAvailable(RedisContainerPool::sharedLease);
+        lease.flush();
+    }
+}
@@ -0,0 +1,181 @@
+package io.github.fun.stuff.redis;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.testcontainers.containers.GenericContainer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.testcontainers.utility.DockerImageName.parse;
+
+/**
+ * JVM wide pool of started {@code redis:latest} containers shared by the test classes and Spring test contexts, so a
+ * test run boots Redis once instead of once per class.
+ * <ul>
+ *     <li>{@link #shared()} is the container for {@code @ServiceConnection("redis")} fields and beans, its users
+ *     share database 0</li>
+ *     <li>{@link #acquire()} leases a database of its own, see {@link RedisContainerPoolConfiguration}, so classes
+ *     running in parallel do not see each other's keys. Leases spread over {@code -Dredis.container-pool.size}
+ *     containers, 1 by default, 15 databases each</li>
+ * </ul>
+ * {@code stop()} from a test lifecycle is ignored, the containers are removed by the Testcontainers reaper at JVM exit.
+ */
+final class RedisContainerPool {
+
+    static final int DATABASES = 16;
+
+    private static final int SIZE = Integer.getInteger("redis.container-pool.size", 1);
+    private static final List<PooledRedisContainer> CONTAINERS = new ArrayList<>(SIZE);
+    private static final BitSet LEASED = new BitSet(SIZE * (DATABASES - 1));
+    private static Lease shared;
+
+    /**
+     * Database {@code database} of a pooled container, {@link #flush()} empties it between tests.
+     */
+    static final class Lease implements AutoCloseable {
+
+        private final PooledRedisContainer container;
+        private final int database;
+        private final int slot;
+        private RedisClient client;
+        private StatefulRedisConnection<String, String> connection;
+
+        private Lease(PooledRedisContainer container, int database, int slot) {
+            this.container = container;
+            this.database = database;
+            this.slot = slot;
+        }
+
+        GenericContainer<?> container() {
+            return container;
+        }
+
+        int database() {
+            return database;
+        }
+
+        /**
+         * @return what {@code @ServiceConnection} would create for the container, on the leased database
+         */
+        RedisConnectionDetails connectionDetails() {
+            var host = container.getHost();
+            int port = container.getFirstMappedPort();
+            return new RedisConnectionDetails() {
+                @Override
+                public Standalone getStandalone() {
+                    return new Standalone() {
+                        @Override
+                        public String getHost() {
+                            return host;
+                        }
+
+                        @Override
+                        public int getPort() {
+                            return port;
+                        }
+
+                        @Override
+                        public int getDatabase() {
+                            return database;
+                        }
+                    };
+                }
+            };
+        }
+
+        /**
+         * {@code FLUSHDB} on the leased database.
+         */
+        synchronized void flush() {
+            if (connection == null) {
+                client = RedisClient.create(RedisURI.builder()
+                        .withHost(container.getHost())
+                        .withPort(container.getFirstMappedPort())
+                        .withDatabase(database)
+                        .build());
+                connection = client.connect();
+            }
+            connection.sync().flushdb();
+        }
+
+        /**
+         * Closes the connection of {@link #flush()}, and gives the database back unless it is the shared one.
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (connection != null) {
+                    connection.close();
+                    client.shutdown();
+                    connection = null;
+                    client = null;
+                }
+            }
+            if (slot >= 0) {
+                release(slot);
+            }
+        }
+    }
+
+    private static final class PooledRedisContainer extends GenericContainer<PooledRedisContainer> {
+
+        private PooledRedisContainer() {
+            super(parse("redis:latest"));
+            withExposedPorts(6379);
+        }
+
+        @Override
+        public void stop() {
+            // shared across the test classes, the reaper removes it at JVM exit
+        }
+    }
+
+    private RedisContainerPool() {
+    }
+
+    /**
+     * @return the started container of database 0, the same instance on every call
+     */
+    static GenericContainer<?> shared() {
+        return sharedLease().container();
+    }
+
+    static synchronized Lease sharedLease() {
+        if (shared == null) {
+            shared = new Lease(container(0), 0, -1);
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "redis-container-pool-shutdown"));
+        }
+        return shared;
+    }
+
+    /**
+     * @return a database nobody else holds until the lease is closed
+     * @throws IllegalStateException when every database of the pool is leased
+     */
+    static synchronized Lease acquire() {
+        int slot = LEASED.nextClearBit(0);
+        if (slot >= SIZE * (DATABASES - 1)) {
+            throw new IllegalStateException("all " + slot + " databases are leased, raise -Dredis.container-pool.size");
+        }
+        var lease = new Lease(container(slot % SIZE), 1 + slot / SIZE, slot);
+        LEASED.set(slot);
+        return lease;
+    }
+
+    private static synchronized void release(int slot) {
+        LEASED.clear(slot);
+    }
+
+    private static synchronized PooledRedisContainer container(int index) {
+        while (CONTAINERS.size() <= index) {
+            CONTAINERS.add(new PooledRedisContainer());
+        }
+        var container = CONTAINERS.get(index);
+        container.start();
+        return container;
+    }
+}
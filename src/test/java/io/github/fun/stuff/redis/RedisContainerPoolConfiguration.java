@@ -0,0 +1,27 @@
+package io.github.fun.stuff.redis;
+
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Gives the test context a database of its own in a {@link RedisContainerPool} container: the lease lives as long
+ * as the cached context and its {@link RedisConnectionDetails} replace the ones of a {@code @ServiceConnection}.
+ * Combined with {@link RedisContainerExtension} the database is empty before each test.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+@ImportAutoConfiguration(RedisAutoConfiguration.class)
+class RedisContainerPoolConfiguration {
+
+    @Bean(destroyMethod = "close")
+    RedisContainerPool.Lease redisContainerLease() {
+        return RedisContainerPool.acquire();
+    }
+
+    @Bean
+    RedisConnectionDetails redisConnectionDetails(RedisContainerPool.Lease redisContainerLease) {
+        return redisContainerLease.connectionDetails();
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig(RedisContainerPoolConfiguration.class)
+@ExtendWith(RedisContainerExtension.class)
+class RedisContainerPoolTest {
+
+    @Autowired
+    StringRedisTemplate redisTemplate;
+    @Autowired
+    RedisContainerPool.Lease lease;
+
+    @Test
+    void testLeasedDatabase() {
+        Assertions.assertNotEquals(0, lease.database());
+
+        redisTemplate.opsForValue().set("key", "value");
+
+        try (var connection = redisTemplate.getRequiredConnectionFactory().getConnection()) {
+            Assertions.assertEquals(1L, connection.serverCommands().dbSize());
+        }
+    }
+
+    @Test
+    void testFlushedBeforeEachTest() {
+        Assertions.assertNull(redisTemplate.opsForValue().get("counter"));
+        Assertions.assertEquals(1L, redisTemplate.opsForValue().increment("counter"));
+    }
+
+    @Test
+    void testLeasesDoNotOverlap() {
+        try (var first = RedisContainerPool.acquire(); var second = RedisContainerPool.acquire()) {
+            Assertions.assertFalse(first.container() == second.container() && first.database() == second.database());
+            Assertions.assertFalse(first.container() == lease.container() && first.database() == lease.database());
+        }
+    }
+
+    @Test
+    void testSharedContainerSurvivesStop() {
+        RedisContainerPool.shared().stop();
+
+        Assertions.assertTrue(RedisContainerPool.shared().isRunning());
+    }
+}
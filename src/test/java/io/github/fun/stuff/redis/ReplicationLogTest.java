@@ -0,0 +1,149 @@
+package io.github.fun.stuff.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.fun.stuff.redis.RedisCommandCodecTest.commandId;
+
+class ReplicationLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAppendAndRead() throws Exception {
+        try (var log = ReplicationLog.open(directory, options(4096))) {
+            long first = log.append(set(0));
+            long second = log.append(set(1));
+
+            Assertions.assertEquals(0, first);
+            Assertions.assertTrue(second > first);
+            var cursor = log.openCursor("target");
+            Assertions.assertEquals(List.of("0", "1"), readAll(cursor));
+            Assertions.assertEquals(0, cursor.getLag());
+        }
+    }
+
+    @Test
+    void testSegmentRolling() throws Exception {
+        try (var log = ReplicationLog.open(directory, options(256))) {
+            for (int i = 0; i < 100; i++) {
+                log.append(set(i));
+            }
+            Assertions.assertTrue(segmentCount() > 1);
+            var values = readAll(log.openCursor("target"));
+            Assertions.assertEquals(100, values.size());
+            Assertions.assertEquals("99", values.get(99));
+        }
+    }
+
+    @Test
+    void testCursorCommit() throws Exception {
+        try (var log = ReplicationLog.open(directory, options(4096))) {
+            log.append(set(0));
+            log.append(set(1));
+            var cursor = log.openCursor("target");
+            cursor.next();
+            cursor.commit();
+        }
+        try (var log = ReplicationLog.open(directory, options(4096))) {
+            Assertions.assertEquals(List.of("1"), readAll(log.openCursor("target")));
+            Assertions.assertEquals(List.of("0", "1"), readAll(log.openCursor("other")));
+        }
+    }
+
+    @Test
+    void testRecoveryTruncatesTornTail() throws Exception {
+        long end;
+        try (var log = ReplicationLog.open(directory, options(4096))) {
+            log.append(set(0));
+            end = log.append(set(1));
+        }
+        // tear the second record: keep its length, corrupt its payload
+        try (var channel = FileChannel.open(directory.resolve("00000000000000000000.log"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42, 42}), end + ReplicationLog.HEADER_SIZE);
+        }
+        try (var log = ReplicationLog.open(directory, options(4096))) {
+            Assertions.assertEquals(end, log.getEndOffset());
+            log.append(set(2));
+            Assertions.assertEquals(List.of("0", "2"), readAll(log.openCursor("target")));
+        }
+    }
+
+    @Test
+    void testRetention() throws Exception {
+        var options = new ReplicationLog.Options(256, ReplicationLog.FsyncPolicy.NEVER, Duration.ZERO, Duration.ofDays(1), 512);
+        try (var log = ReplicationLog.open(directory, options)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(set(i));
+            }
+            Assertions.assertTrue(segmentCount() <= 3);
+            Assertions.assertTrue(log.getStartOffset() > 0);
+            var values = readAll(log.openCursor("target"));
+            Assertions.assertNotEquals("0", values.get(0));
+            Assertions.assertEquals("99", values.get(values.size() - 1));
+        }
+    }
+
+    @Test
+    void testRetentionHoldsUncommittedRecords() throws Exception {
+        var options = new ReplicationLog.Options(256, ReplicationLog.FsyncPolicy.NEVER, Duration.ZERO, Duration.ofDays(1), 512);
+        try (var log = ReplicationLog.open(directory, options)) {
+            var lagging = log.openCursor("lagging");
+            for (int i = 0; i < 100; i++) {
+                log.append(set(i));
+            }
+            Assertions.assertEquals(0, log.getStartOffset());
+
+            for (int i = 0; i < 50; i++) {
+                lagging.next();
+            }
+            lagging.commit();
+            for (int i = 100; i < 120; i++) {
+                log.append(set(i));
+            }
+            Assertions.assertTrue(log.getStartOffset() > 0);
+            Assertions.assertTrue(log.getStartOffset() <= lagging.getOffset());
+            Assertions.assertEquals("50", readAll(lagging).get(0));
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+
+    private static List<String> readAll(ReplicationLog.Cursor cursor) {
+        List<String> values = new ArrayList<>();
+        RedisCommandRecord record;
+        while ((record = cursor.next()) != null) {
+            values.add(new String((byte[]) record.args()[1], StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    private static ReplicationLog.Options options(int segmentSize) {
+        return new ReplicationLog.Options(segmentSize, ReplicationLog.FsyncPolicy.GROUP_COMMIT, Duration.ofMillis(1),
+                Duration.ofDays(1), Long.MAX_VALUE);
+    }
+
+    private static RedisCommandRecord set(int i) throws NoSuchMethodException {
+        int commandId = commandId(RedisStringCommands.class, "set", byte[].class, byte[].class);
+        return new RedisCommandRecord(commandId, new Object[]{"key".getBytes(StandardCharsets.UTF_8),
+                String.valueOf(i).getBytes(StandardCharsets.UTF_8)});
+    }
+}
@@ -3,6 +3,7 @@ package io.github.fun.stuff.redis;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,8 +27,11 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.util.Arrays;
 
-import static org.testcontainers.utility.DockerImageName.parse;
-
+/**
+ * The ways of handing a container to Spring Boot, all on {@link RedisContainerPool#shared() database 0 of the shared
+ * container}, which {@link RedisContainerExtension} empties before each test.
+ */
+@ExtendWith(RedisContainerExtension.class)
 public class SpringBootTestContainersExample {
 
     private static final Logger LOG = LoggerFactory.getLogger(SpringBootTestContainersExample.class);
@@ -39,7 +43,7 @@ public class SpringBootTestContainersExample {
 
         @Container
         @ServiceConnection("redis")
-        static GenericContainer<?> redisContainer = new GenericContainer<>(parse("redis:latest")).withExposedPorts(6379);
+        static GenericContainer<?> redisContainer = RedisContainerPool.shared();
 
         @Autowired
         RedisTemplate<String, String> redisTemplate;
@@ -81,7 +85,7 @@ public class SpringBootTestContainersExample {
             @Bean
             @ServiceConnection("redis")
             public GenericContainer<?> redisContainer() {
-                return new GenericContainer<>(parse("redis:latest")).withExposedPorts(6379);
+                return RedisContainerPool.shared();
             }
 
         }
@@ -113,7 +117,7 @@ public class SpringBootTestContainersExample {
         interface RedisContainer {
             @Container
             @ServiceConnection("redis")
-            GenericContainer<?> redisContainer = new GenericContainer<>(parse("redis:latest")).withExposedPorts(6379);
+            GenericContainer<?> redisContainer = RedisContainerPool.shared();
 
         }
     }